@@ -0,0 +1,91 @@
+package de.fh.rosenheim.aline.benchmark;
+
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.security.utils.Authorities;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Synthetic users, seminars and bookings for the benchmarks, linked in both directions like Hibernate would load them.
+ * A fixed seed is used, so every run works on the same data.
+ */
+public class BenchmarkData {
+
+    private static final long SEED = 4711;
+    private static final String[] DIVISIONS = {"FIT", "FOO", "HR", "SALES", "IT"};
+    private static final String[] CATEGORIES = {"Agile", "Management", "Soft Skills", "Technology"};
+
+    public final List<User> users = new ArrayList<>();
+    public final List<Seminar> seminars = new ArrayList<>();
+
+    /**
+     * @param userCount       N users, spread over a few divisions
+     * @param bookingsPerUser M bookings per user, each for a different seminar (at most seminarCount)
+     * @param seminarCount    K seminars, spread over the last, the current and the next year
+     */
+    public static BenchmarkData generate(int userCount, int bookingsPerUser, int seminarCount) {
+        Random random = new Random(SEED);
+        BenchmarkData data = new BenchmarkData();
+        int currentYear = Calendar.getInstance().get(Calendar.YEAR);
+
+        for (int i = 0; i < seminarCount; i++) {
+            data.seminars.add(createSeminar(i, currentYear - 1 + i % 3, random));
+        }
+
+        long bookingId = 0;
+        BookingStatus[] statuses = BookingStatus.values();
+        for (int i = 0; i < userCount; i++) {
+            User user = User.builder()
+                    .username("user" + i)
+                    .firstName("First" + i)
+                    .lastName("Last" + i)
+                    .division(DIVISIONS[i % DIVISIONS.length])
+                    .authorities(Authorities.EMPLOYEE)
+                    .build();
+            int firstSeminar = random.nextInt(seminarCount);
+            for (int j = 0; j < Math.min(bookingsPerUser, seminarCount); j++) {
+                Seminar seminar = data.seminars.get((firstSeminar + j) % seminarCount);
+                Date created = new Date(System.currentTimeMillis() - random.nextInt(1000000000));
+                Booking booking = Booking.builder()
+                        .id(++bookingId)
+                        .user(user)
+                        .seminar(seminar)
+                        .status(statuses[random.nextInt(statuses.length)])
+                        .created(created)
+                        .updated(created)
+                        .build();
+                user.addBooking(booking);
+                seminar.getBookings().add(booking);
+            }
+            data.users.add(user);
+        }
+        return data;
+    }
+
+    private static Seminar createSeminar(int index, int year, Random random) {
+        Seminar seminar = new Seminar();
+        seminar.setId((long) index);
+        seminar.setName("Seminar " + index);
+        seminar.setDescription("Description of seminar " + index);
+        seminar.setAgenda("Agenda of seminar " + index);
+        seminar.setCategory(CATEGORIES[index % CATEGORIES.length]);
+        seminar.setTargetLevel(new int[]{1 + index % 3, 2 + index % 3});
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(10 + random.nextInt(20));
+        seminar.setCostsPerParticipant(10000 + random.nextInt(100000));
+
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(year, random.nextInt(12), 1 + random.nextInt(27));
+        Date firstDay = calendar.getTime();
+        calendar.add(Calendar.DAY_OF_MONTH, 1);
+        seminar.setDates(new Date[]{firstDay, calendar.getTime()});
+        return seminar;
+    }
+}
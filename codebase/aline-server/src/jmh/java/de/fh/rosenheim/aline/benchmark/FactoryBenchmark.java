@@ -0,0 +1,104 @@
+package de.fh.rosenheim.aline.benchmark;
+
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.model.dtos.bill.BillFactory;
+import de.fh.rosenheim.aline.model.dtos.bill.DivisionSumDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingFactory;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFactory;
+import de.fh.rosenheim.aline.model.dtos.user.UserDTO;
+import de.fh.rosenheim.aline.model.dtos.user.UserFactory;
+import de.fh.rosenheim.aline.util.DateUtil;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the DTO factories on synthetic data of N users with M bookings each on K seminars.
+ * Every benchmark converts the whole data set once, like the endpoints listing users, bills or seminars do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FactoryBenchmark {
+
+    @Param({"100", "1000"})
+    public int users;
+
+    @Param({"10"})
+    public int bookingsPerUser;
+
+    @Param({"50"})
+    public int seminars;
+
+    private BenchmarkData data;
+    private BookingFactory bookingFactory;
+    private UserFactory userFactory;
+    private BillFactory billFactory;
+    private List<List<UserDTO>> participants;
+    private List<List<DivisionSumDTO>> divisionSums;
+
+    @Setup
+    public void setUp() {
+        data = BenchmarkData.generate(users, bookingsPerUser, seminars);
+        bookingFactory = new BookingFactory(new DateUtil());
+        userFactory = new UserFactory(bookingFactory);
+        billFactory = new BillFactory();
+
+        // What the repository queries for the bills would return
+        participants = new ArrayList<>();
+        divisionSums = new ArrayList<>();
+        for (Seminar seminar : data.seminars) {
+            List<UserDTO> seminarParticipants = new ArrayList<>();
+            Map<String, Long> seminarSums = new TreeMap<>();
+            for (Booking booking : seminar.getBookings()) {
+                if (booking.getStatus() == BookingStatus.GRANTED) {
+                    User user = booking.getUser();
+                    seminarParticipants.add(new UserDTO(
+                            user.getUsername(), user.getFirstName(), user.getLastName(), user.getDivision()));
+                    seminarSums.merge(user.getDivision(), seminar.getCostsPerParticipant(), Long::sum);
+                }
+            }
+            List<DivisionSumDTO> sums = new ArrayList<>();
+            seminarSums.forEach((division, sum) -> sums.add(new DivisionSumDTO(division, sum)));
+            participants.add(seminarParticipants);
+            divisionSums.add(sums);
+        }
+    }
+
+    @Benchmark
+    public void bookingSummaries(Blackhole blackhole) {
+        for (User user : data.users) {
+            blackhole.consume(bookingFactory.toBookingSummaryDTOs(user.getBookings()));
+        }
+    }
+
+    @Benchmark
+    public List<UserDTO> userDTOs() {
+        return userFactory.toUserDTOs(data.users);
+    }
+
+    @Benchmark
+    public void bills(Blackhole blackhole) {
+        for (int i = 0; i < data.seminars.size(); i++) {
+            blackhole.consume(billFactory.generateBill(data.seminars.get(i), participants.get(i), divisionSums.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void seminarDTOs(Blackhole blackhole) {
+        for (Seminar seminar : data.seminars) {
+            blackhole.consume(SeminarFactory.toSeminarDTO(seminar));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package de.fh.rosenheim.aline.benchmark;
+
+import de.fh.rosenheim.aline.model.security.SecurityUser;
+import de.fh.rosenheim.aline.security.service.SecurityService;
+import de.fh.rosenheim.aline.security.utils.Authorities;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the permission checks of a typical request with the precomputed authorities of the {@link SecurityUser}
+ * against searching the list of granted authorities, which was done before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityServiceBenchmark {
+
+    private static final String DIVISION = "FIT";
+
+    private SecurityService securityService;
+    private SecurityUser divisionHead;
+    private SecurityUser employee;
+
+    @Setup
+    public void setUp() {
+        // Only checks on a given principal are measured, so no user has to be loaded
+        securityService = new SecurityService(null);
+        divisionHead = new SecurityUser("head", null, DIVISION, null, null, AuthorityUtils.createAuthorityList(
+                Authorities.EMPLOYEE, Authorities.DIVISION_HEAD, Authorities.TOP_DOG));
+        employee = new SecurityUser("employee", null, DIVISION, null, null, AuthorityUtils.createAuthorityList(
+                Authorities.EMPLOYEE));
+    }
+
+    @Benchmark
+    public boolean precomputedAuthorities() {
+        return securityService.canGetDivisionUsers(divisionHead, DIVISION)
+                && !securityService.canGetDivisionUsers(employee, DIVISION)
+                && !securityService.isFrontOffice(employee);
+    }
+
+    @Benchmark
+    public boolean grantedAuthorityLookup() {
+        return canGetDivisionUsers(divisionHead, DIVISION)
+                && !canGetDivisionUsers(employee, DIVISION)
+                && !hasAuthority(employee, Authorities.FRONT_OFFICE);
+    }
+
+    /**
+     * {@link SecurityService#canGetDivisionUsers} as it was implemented before
+     */
+    private static boolean canGetDivisionUsers(SecurityUser principal, String division) {
+        return hasAuthority(principal, Authorities.FRONT_OFFICE) ||
+                (hasAuthority(principal, Authorities.DIVISION_HEAD)
+                        && (division == null || division.length() < 1 || principal.getDivision().equals(division))
+                );
+    }
+
+    private static boolean hasAuthority(SecurityUser principal, String authority) {
+        return principal.getAuthorities().contains(new SimpleGrantedAuthority(authority));
+    }
+}
@@ -3,7 +3,13 @@ package de.fh.rosenheim.aline.controller.rest;
 import com.fasterxml.jackson.annotation.JsonView;
 import de.fh.rosenheim.aline.model.domain.Booking;
 import de.fh.rosenheim.aline.model.dtos.booking.BookingDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingExportDTO;
 import de.fh.rosenheim.aline.model.dtos.booking.BookingRequestDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingStatusRequestDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingStatusResultDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupCheckDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.PendingBookingDTO;
 import de.fh.rosenheim.aline.model.dtos.generic.ErrorResponse;
 import de.fh.rosenheim.aline.model.dtos.json.view.View;
 import de.fh.rosenheim.aline.model.exceptions.BookingException;
@@ -11,14 +17,23 @@ import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
 import de.fh.rosenheim.aline.service.BookingService;
 import de.fh.rosenheim.aline.util.BookingUtil;
 import de.fh.rosenheim.aline.util.ControllerUtil;
+import de.fh.rosenheim.aline.util.SwaggerTexts;
 import io.swagger.annotations.ApiOperation;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -29,6 +44,8 @@ import java.util.stream.Collectors;
 @RequestMapping("${route.booking.base}")
 public class BookingsController {
 
+    private static final MediaType CSV = new MediaType("text", "csv", StandardCharsets.UTF_8);
+
     private final BookingService bookingService;
     private final ControllerUtil controllerUtil;
     private final BookingUtil bookingUtil;
@@ -51,7 +68,7 @@ public class BookingsController {
      */
     @RequestMapping(method = RequestMethod.POST)
     @PreAuthorize("@securityService.canBookForUser(principal, #bookingRequest.getUserName())")
-    @ApiOperation(value = "book seminar", notes = "Books the seminar with the given ID to the current user (detected via token) or the given name if the current user has sufficient permission")
+    @ApiOperation(value = "book seminar", notes = "Books the seminar with the given ID to the current user (detected via token) or the given name if the current user has sufficient permission. If the seminar is fully booked, the booking is WAITLISTED and gets the next free seat")
     @JsonView(View.BookingSummaryWithSeminarDetailsView.class)
     public BookingDTO book(HttpServletRequest httpServletRequest, @Validated @RequestBody BookingRequestDTO bookingRequest)
             throws BookingException {
@@ -81,10 +98,11 @@ public class BookingsController {
      * @param id of the booking
      * @return The updated booking
      * @throws NoObjectForIdException if there is no Booking for the given ID
+     * @throws BookingException       if the booking is waitlisted or the seminar is fully booked
      */
     @RequestMapping(value = "/{id}/${route.booking.grant}", method = RequestMethod.POST)
     @JsonView(View.BookingSummaryWithSeminarDetailsView.class)
-    public BookingDTO grantBooking(@PathVariable long id) throws NoObjectForIdException {
+    public BookingDTO grantBooking(@PathVariable long id) throws NoObjectForIdException, BookingException {
         return bookingUtil.generateBookingDTO(bookingService.grantBooking(id));
     }
 
@@ -101,6 +119,63 @@ public class BookingsController {
         return bookingUtil.generateBookingDTO(bookingService.denyBooking(id));
     }
 
+    /**
+     * Set the status of many bookings to GRANTED or DENIED at once
+     * Bookings that don't exist or can't be changed by the current user are skipped, all others are changed together.
+     *
+     * @return the result for every booking (with an error message for the skipped bookings)
+     * @throws BookingException if the status is neither GRANTED nor DENIED
+     */
+    @RequestMapping(value = "/${route.booking.status}", method = RequestMethod.POST)
+    public List<BookingStatusResultDTO> changeBookingStatus(@Validated @RequestBody BookingStatusRequestDTO request)
+            throws BookingException {
+        return bookingService.changeBookingStatus(request.getBookingIds(), request.getStatus());
+    }
+
+    /**
+     * Get the bookings waiting for approval (REQUESTED) of all users in a division, oldest first
+     *
+     * @param queryDivision the division, the division of the current user if not given
+     * @param pageable      page, size and sort (i.e. ?page=0&size=20&sort=created,asc), sortable by every property
+     *                      of a pending booking
+     * @return the requested page, including the total number of pending bookings
+     * @throws BookingException if the sort property is not a property of a pending booking
+     */
+    @RequestMapping(value = "/${route.booking.pending}", method = RequestMethod.GET)
+    @PreAuthorize("@securityService.canGetDivisionUsers(principal, #queryDivision)")
+    public Page<PendingBookingDTO> getPendingBookings(
+            @RequestParam(name = "division", required = false) String queryDivision,
+            @PageableDefault(sort = {"created", "id"}) Pageable pageable) throws BookingException {
+        return bookingService.getPendingBookings(queryDivision, pageable);
+    }
+
+    /**
+     * Get the spendings and booking counts of a division per year and category, current year first
+     *
+     * @param queryDivision the division, the division of the current user if not given
+     * @param year          only this year, all years if not given
+     */
+    @RequestMapping(value = "/${route.booking.rollup}", method = RequestMethod.GET)
+    @PreAuthorize("@securityService.canGetDivisionUsers(principal, #queryDivision)")
+    @ApiOperation(value = "get the spendings of a division", notes = SwaggerTexts.GET_DIVISION_ROLLUP)
+    public List<DivisionRollupDTO> getDivisionRollup(
+            @RequestParam(name = "division", required = false) String queryDivision,
+            @RequestParam(name = "year", required = false) Integer year) {
+        return bookingService.getDivisionRollup(queryDivision, year);
+    }
+
+    /**
+     * Rebuild the spendings and booking counts of all divisions from the bookings, as a consistency check
+     *
+     * @return the number of entries and how many of them had to be corrected
+     */
+    @RequestMapping(value = "/${route.booking.rollup}/${route.booking.rebuild}", method = RequestMethod.POST)
+    @PreAuthorize("@securityService.isFrontOffice(principal)")
+    @ApiOperation(value = "rebuild the spendings of all divisions", notes = SwaggerTexts.REBUILD_DIVISION_ROLLUP)
+    public DivisionRollupCheckDTO rebuildDivisionRollup() {
+        return bookingService.rebuildDivisionRollup();
+    }
+
     /**
      * Delete the booking
      *
@@ -125,6 +200,41 @@ public class BookingsController {
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Export all bookings as CSV, including the data of their seminars and users
+     * The rows are written while they are read from the database (in a separate thread), so the export doesn't have
+     * to fit into memory.
+     *
+     * @return the CSV file, one booking per line
+     */
+    @RequestMapping(value = "/${route.booking.export}", method = RequestMethod.GET)
+    @PreAuthorize("@securityService.isFrontOffice(principal)")
+    @ApiOperation(value = "export bookings", notes = "Streams all bookings with seminar and user data as CSV")
+    public ResponseEntity<StreamingResponseBody> exportBookings() {
+        StreamingResponseBody body = out -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            writer.write(BookingExportDTO.CSV_HEADER);
+            writer.write('\n');
+            try {
+                bookingService.exportBookings(booking -> {
+                    try {
+                        writer.write(booking.toCsv());
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+        };
+        return ResponseEntity.ok()
+                .contentType(CSV)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=bookings.csv")
+                .body(body);
+    }
+
     // ----------------------------------------------------------------------------------------------- Exception Handler
 
     /**
@@ -1,26 +1,44 @@
 package de.fh.rosenheim.aline.controller.rest;
 
 import com.fasterxml.jackson.annotation.JsonView;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import de.fh.rosenheim.aline.model.domain.Category;
-import de.fh.rosenheim.aline.model.domain.Seminar;
 import de.fh.rosenheim.aline.model.dtos.bill.BillDTO;
 import de.fh.rosenheim.aline.model.dtos.generic.ErrorResponse;
 import de.fh.rosenheim.aline.model.dtos.json.view.View;
 import de.fh.rosenheim.aline.model.dtos.seminar.SeminarBasicsDTO;
 import de.fh.rosenheim.aline.model.dtos.seminar.SeminarDTO;
 import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFactory;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFilterDTO;
 import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
 import de.fh.rosenheim.aline.model.exceptions.UnknownCategoryException;
+import de.fh.rosenheim.aline.service.SeminarCatalog;
 import de.fh.rosenheim.aline.service.SeminarService;
+import de.fh.rosenheim.aline.util.ControllerUtil;
+import de.fh.rosenheim.aline.util.SwaggerTexts;
+import io.swagger.annotations.ApiOperation;
+import io.swagger.annotations.ApiParam;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJacksonValue;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * All HTTP endpoints related to seminars
@@ -29,40 +47,119 @@ import java.util.stream.StreamSupport;
 @RequestMapping("${route.seminar.base}")
 public class SeminarsController {
 
+    /**
+     * JSON lines, one bill per line
+     */
+    private static final String BILL_EXPORT_CONTENT_TYPE = "application/x-ndjson";
+
+    private static final String SUMMARY_FIELDS = "summary";
+
     private final SeminarService seminarService;
+    private final SeminarCatalog seminarCatalog;
+    private final ControllerUtil controllerUtil;
+    private final ObjectWriter billWriter;
 
-    public SeminarsController(SeminarService seminarService) {
+    public SeminarsController(SeminarService seminarService, SeminarCatalog seminarCatalog,
+                              ControllerUtil controllerUtil, ObjectMapper objectMapper) {
         this.seminarService = seminarService;
+        this.seminarCatalog = seminarCatalog;
+        this.controllerUtil = controllerUtil;
+        this.billWriter = objectMapper.writerWithView(View.BillView.class)
+                .without(SerializationFeature.INDENT_OUTPUT);
     }
 
     // ------------------------------------------------------------------------------------------------- Seminar Handler
 
     /**
      * Get all seminars
+     *
+     * Answers with 304 Not Modified if the ETag of the request is still the current version of the seminars
+     *
+     * @param fields "summary" to leave out the long texts of the seminars
      */
     @RequestMapping(method = RequestMethod.GET)
-    public List<SeminarDTO> getAllSeminars() {
-        return toDto(seminarService.getAllSeminars());
+    @ApiOperation(value = "get all seminars", response = SeminarDTO.class, responseContainer = "List")
+    public MappingJacksonValue getAllSeminars(
+            @ApiParam(value = SwaggerTexts.SEMINAR_FIELDS) @RequestParam(required = false) String fields,
+            ServletWebRequest request) {
+        SeminarCatalog.Snapshot catalog = seminarCatalog.snapshot();
+        Date now = new Date();
+        if (controllerUtil.isNotModified(request, catalog.getVersion(now))) {
+            return null;
+        }
+        return withFields(catalog.getAllSeminars(), fields);
+    }
+
+    /**
+     * Get a single page of seminars, optionally filtered
+     * Answers with 304 Not Modified if the ETag of the request is still the current version of the seminars
+     *
+     * @param filter   category, target level, bookable and date range filters (all optional)
+     * @param pageable page, size and sort (i.e. ?page=0&size=20&sort=name,asc)
+     * @return the requested page of seminars
+     */
+    @RequestMapping(value = "${route.seminar.query}", method = RequestMethod.GET)
+    public Page<SeminarDTO> querySeminars(SeminarFilterDTO filter, @PageableDefault(sort = "name") Pageable pageable,
+                                          ServletWebRequest request) {
+        if (controllerUtil.isNotModified(request, seminarService.getCatalogVersion())) {
+            return null;
+        }
+        return seminarService.getSeminars(filter, pageable).map(SeminarFactory::toSeminarDTO);
+    }
+
+    /**
+     * Full text search over name, category, trainer, goal, description and agenda of all seminars
+     * Every word of the query has to match (the beginning of) a word of the seminar, the best matches come first.
+     *
+     * @param q        the words to search for
+     * @param pageable page and size (sorting is always by relevance)
+     * @return the requested page of matching seminars
+     */
+    @RequestMapping(value = "${route.seminar.search}", method = RequestMethod.GET)
+    public Page<SeminarDTO> searchSeminars(@RequestParam String q, @PageableDefault(size = 50) Pageable pageable) {
+        return seminarCatalog.search(q, pageable);
     }
 
     /**
      * Get all seminars
      *
+     * Answers with 304 Not Modified if the ETag of the request is still the current version of the seminars
+     *
+     * @param fields "summary" to leave out the long texts of the seminars
      * @return a Iterable over all Seminars (which will be serialized as array in JSON)
      */
     @RequestMapping(value = "${route.seminar.past}", method = RequestMethod.GET)
-    public List<SeminarDTO> getPastSeminars() {
-        return toDto(seminarService.getPastSeminars());
+    @ApiOperation(value = "get past seminars", response = SeminarDTO.class, responseContainer = "List")
+    public MappingJacksonValue getPastSeminars(
+            @ApiParam(value = SwaggerTexts.SEMINAR_FIELDS) @RequestParam(required = false) String fields,
+            ServletWebRequest request) {
+        SeminarCatalog.Snapshot catalog = seminarCatalog.snapshot();
+        Date now = new Date();
+        if (controllerUtil.isNotModified(request, catalog.getVersion(now))) {
+            return null;
+        }
+        return withFields(catalog.getPastSeminars(now), fields);
     }
 
     /**
      * Get all seminars
      *
+     * Answers with 304 Not Modified if the ETag of the request is still the current version of the seminars
+     *
+     * @param fields "summary" to leave out the long texts of the seminars
      * @return a Iterable over all Seminars (which will be serialized as array in JSON)
      */
     @RequestMapping(value = "${route.seminar.current}", method = RequestMethod.GET)
-    public List<SeminarDTO> getCurrentSeminars() {
-        return toDto(seminarService.getCurrentSeminars());
+    @ApiOperation(value = "get current seminars", response = SeminarDTO.class, responseContainer = "List")
+    public MappingJacksonValue getCurrentSeminars(
+            @ApiParam(value = SwaggerTexts.SEMINAR_FIELDS) @RequestParam(required = false) String fields,
+            ServletWebRequest request) {
+        SeminarCatalog.Snapshot catalog = seminarCatalog.snapshot();
+        Date now = new Date();
+        if (controllerUtil.isNotModified(request, catalog.getVersion(now))) {
+            return null;
+        }
+        return withFields(catalog.getCurrentSeminars(now), fields);
     }
 
     /**
@@ -91,7 +188,7 @@ public class SeminarsController {
      */
     @RequestMapping(value = "{id}", method = RequestMethod.GET)
     public SeminarDTO getSeminarById(@PathVariable long id) throws NoObjectForIdException {
-        return SeminarFactory.toSeminarDTO(seminarService.getSeminar(id));
+        return seminarCatalog.getSeminar(id);
     }
 
     /**
@@ -141,16 +238,45 @@ public class SeminarsController {
         return seminarService.getBill(id);
     }
 
+    /**
+     * Generate the bills for all seminars matching the filter (i.e. a whole year via from & to or a category)
+     * The bills are written as JSON lines while they are generated, so even big exports are not kept in memory.
+     *
+     * @param filter category, target level, bookable and date range filters (all optional)
+     */
+    @RequestMapping(value = "${route.seminar.bill}", method = RequestMethod.GET)
+    @PreAuthorize("@securityService.isFrontOffice(principal)")
+    public void exportBills(SeminarFilterDTO filter, HttpServletResponse response) throws IOException {
+        response.setContentType(BILL_EXPORT_CONTENT_TYPE);
+        ServletOutputStream out = response.getOutputStream();
+        try {
+            seminarService.generateBills(filter, bill -> {
+                try {
+                    out.write(billWriter.writeValueAsBytes(bill));
+                    out.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        out.flush();
+    }
+
     // ------------------------------------------------------------------------------------------------ Category Handler
 
     /**
      * Get all categories
+     * Answers with 304 Not Modified if the ETag of the request still matches the categories
      *
      * @return A list of all category names
      */
     @RequestMapping(value = "${route.seminar.category}", method = RequestMethod.GET)
-    public List<String> getAllCategories() {
-        return seminarService.getAllCategories();
+    public List<String> getAllCategories(ServletWebRequest request) {
+        List<String> categories = seminarService.getAllCategories();
+        String version = DigestUtils.md5DigestAsHex(String.join("\n", categories).getBytes(StandardCharsets.UTF_8));
+        return controllerUtil.isNotModified(request, version) ? null : categories;
     }
 
     /**
@@ -200,10 +326,14 @@ public class SeminarsController {
                 HttpStatus.NOT_FOUND);
     }
 
-    private List<SeminarDTO> toDto(Iterable<Seminar> seminars) {
-        return StreamSupport
-                .stream(seminars.spliterator(), false)
-                .map(SeminarFactory::toSeminarDTO)
-                .collect(Collectors.toList());
+    /**
+     * Serializes only the fields of the SeminarListView if the summary was requested, otherwise all fields
+     */
+    private MappingJacksonValue withFields(List<SeminarDTO> seminars, String fields) {
+        MappingJacksonValue value = new MappingJacksonValue(seminars);
+        if (SUMMARY_FIELDS.equalsIgnoreCase(fields)) {
+            value.setSerializationView(View.SeminarListView.class);
+        }
+        return value;
     }
 }
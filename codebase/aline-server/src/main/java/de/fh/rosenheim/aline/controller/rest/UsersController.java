@@ -1,9 +1,12 @@
 package de.fh.rosenheim.aline.controller.rest;
 
+import de.fh.rosenheim.aline.model.domain.User;
 import de.fh.rosenheim.aline.model.dtos.generic.ErrorResponse;
 import de.fh.rosenheim.aline.model.dtos.user.UserDTO;
 import de.fh.rosenheim.aline.model.dtos.user.UserFactory;
 import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
+import de.fh.rosenheim.aline.service.BookingService;
+import de.fh.rosenheim.aline.service.SpendingLedgerService;
 import de.fh.rosenheim.aline.service.UserService;
 import de.fh.rosenheim.aline.util.ControllerUtil;
 import de.fh.rosenheim.aline.util.SwaggerTexts;
@@ -11,14 +14,11 @@ import io.swagger.annotations.ApiOperation;
 import io.swagger.annotations.ApiParam;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.access.prepost.PostAuthorize;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.StreamSupport;
 
 /**
  * All HTTP endpoints related to user
@@ -28,23 +28,46 @@ import java.util.stream.StreamSupport;
 public class UsersController {
 
     private final UserService userService;
+    private final BookingService bookingService;
     private final ControllerUtil controllerUtil;
     private final UserFactory userFactory;
+    private final SpendingLedgerService spendingLedgerService;
 
-    public UsersController(UserService userService, ControllerUtil controllerUtil, UserFactory userFactory) {
+    public UsersController(UserService userService, BookingService bookingService, ControllerUtil controllerUtil,
+                           UserFactory userFactory, SpendingLedgerService spendingLedgerService) {
         this.userService = userService;
+        this.bookingService = bookingService;
         this.controllerUtil = controllerUtil;
         this.userFactory = userFactory;
+        this.spendingLedgerService = spendingLedgerService;
     }
 
     @RequestMapping(method = RequestMethod.GET)
-    @PostAuthorize("@securityService.canAccessUserData(principal, returnObject)")
+    @PreAuthorize("@securityService.canAccessDataOfUser(principal, #queryName)")
     @ApiOperation(value = "get user info", notes = SwaggerTexts.GET_USER_DATA)
     public UserDTO user(
             @ApiParam(value = SwaggerTexts.SENSITIVE_DATA) @RequestParam(required = false, name = "name") String queryName,
+            @ApiParam(value = SwaggerTexts.USER_BOOKINGS_YEAR) @RequestParam(required = false, name = "year") Integer year,
             HttpServletRequest request) throws NoObjectForIdException {
         String name = queryName != null ? queryName : controllerUtil.getUsername(request);
-        return userFactory.toUserDTO(userService.getUserByName(name));
+        if (year != null) {
+            User user = userService.getUserByName(name);
+            return userFactory.toUserDTO(user, bookingService.getBookingsOfUser(user.getUsername(), year), year,
+                    spendingLedgerService.getLedger(user));
+        }
+        User user = userService.getUserWithBookingsByName(name);
+        return userFactory.toUserDTO(user, spendingLedgerService.getLedger(user));
+    }
+
+    @RequestMapping(value = "${route.user.spending}", method = RequestMethod.GET)
+    @PreAuthorize("@securityService.canAccessDataOfUser(principal, #queryName)")
+    @ApiOperation(value = "get the spendings of the user per year", notes = SwaggerTexts.GET_USER_SPENDING)
+    public UserDTO spending(
+            @ApiParam(value = SwaggerTexts.SENSITIVE_DATA) @RequestParam(required = false, name = "name") String queryName,
+            HttpServletRequest request) throws NoObjectForIdException {
+        String name = queryName != null ? queryName : controllerUtil.getUsername(request);
+        User user = userService.getUserByName(name);
+        return userFactory.toUserSpendingDTO(user, spendingLedgerService.getLedger(user));
     }
 
     @RequestMapping(value = "${route.user.all}", method = RequestMethod.GET)
@@ -66,10 +89,8 @@ public class UsersController {
             division = userService.getUserByName(controllerUtil.getUsername(request)).getDivision();
         }
 
-        return StreamSupport
-                .stream(userService.getUsersForDivision(division).spliterator(), false)
-                .map(userFactory::toUserDTO)
-                .collect(Collectors.toList());
+        Iterable<User> users = userService.getUsersForDivision(division);
+        return userFactory.toUserDTOs(users, spendingLedgerService.getLedgers(users));
     }
 
     /**
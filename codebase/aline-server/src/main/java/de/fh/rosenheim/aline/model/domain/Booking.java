@@ -9,7 +9,9 @@ import javax.persistence.*;
 import java.util.Date;
 
 @Entity
-@Table(name = "bookings")
+@Table(name = "bookings", uniqueConstraints =
+@UniqueConstraint(name = Booking.UNIQUE_USER_SEMINAR, columnNames = {"USERNAME", "SEMINAR_ID"}), indexes =
+@Index(name = "IDX_BOOKINGS_STATUS_USER", columnList = "STATUS, USERNAME"))
 @Getter
 @EqualsAndHashCode(callSuper = true, of = {"id"})
 @Builder()
@@ -19,13 +21,18 @@ import java.util.Date;
 @AllArgsConstructor
 public class Booking extends DomainBase {
 
+    /**
+     * Name of the unique constraint on user and seminar
+     */
+    public static final String UNIQUE_USER_SEMINAR = "UK_BOOKINGS_USER_SEMINAR";
+
     /**
      * Actually a Booking should be identified by the combination of user & seminar but
      * I couldn't get a composite primary key working exactly the way I wanted in a reasonable amount of time.
      * It should only save the reference via ID in the database, have the full object in Code, only use ID when
      * serializing to JSON and automatically be deleted if either seminar or user is deleted.
-     * So I'm going the not so pretty route of giving it a separate ID and checking (when necessary) if the
-     * seminar / user booking already exists manually.
+     * So I'm going the not so pretty route of giving it a separate ID. The combination of user & seminar is
+     * still unique, the database rejects a second booking for the same seminar / user.
      */
     @Id
     @Setter
@@ -1,7 +1,30 @@
 package de.fh.rosenheim.aline.model.domain;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Persisted by ordinal, so new values have to be appended at the end
+ */
 public enum BookingStatus {
     DENIED,
     REQUESTED,
-    GRANTED
+    GRANTED,
+    /**
+     * The seminar was fully booked, the booking waits for a free seat
+     */
+    WAITLISTED;
+
+    /**
+     * The status of all bookings that take up a seat of the seminar
+     */
+    public static final Set<BookingStatus> ACTIVE = Collections.unmodifiableSet(EnumSet.of(REQUESTED, GRANTED));
+
+    /**
+     * Does a booking with this status take up a seat of the seminar
+     */
+    public boolean isActive() {
+        return ACTIVE.contains(this);
+    }
 }
@@ -0,0 +1,157 @@
+package de.fh.rosenheim.aline.model.domain;
+
+import de.fh.rosenheim.aline.model.base.DomainBase;
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * The precomputed spendings and booking counts of a single division for all seminars of a category in a single year.
+ * The entries are updated with every status change of a booking and rebuilt from the bookings once they expire
+ * (see {@link #validUntil}).
+ */
+@Entity
+@Table(name = "division_rollup", uniqueConstraints =
+@UniqueConstraint(name = "UK_DIVISION_ROLLUP", columnNames = {"DIVISION", "ROLLUP_YEAR", "CATEGORY"}))
+@Getter
+@Setter
+@EqualsAndHashCode(callSuper = false, of = {"id"})
+@NoArgsConstructor
+public class DivisionRollupEntry extends DomainBase {
+
+    private static final long serialVersionUID = 3178503469325918372L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @Column(name = "DIVISION", nullable = false)
+    private String division;
+
+    @Column(name = "ROLLUP_YEAR")
+    private int year;
+
+    /**
+     * The category of the seminars, empty for seminars without category
+     */
+    @Column(name = "CATEGORY", nullable = false)
+    private String category;
+
+    /**
+     * Number of bookings (every user can book a seminar only once) waiting for approval
+     */
+    private long requestedBookingCount;
+    private long requestedSpending;
+    /**
+     * Number of granted bookings, a user with several granted seminars is counted once per seminar
+     */
+    private long grantedBookingCount;
+    private long grantedSpending;
+    private long issuedSpending;
+
+    /**
+     * The issued spendings depend on whether the seminars are over, so they have to be rebuilt once the first
+     * granted seminar ends. Null if all granted seminars are already over.
+     */
+    private Date validUntil;
+
+    public DivisionRollupEntry(String division, int year, String category) {
+        this.division = division;
+        this.year = year;
+        this.category = category != null ? category : "";
+    }
+
+    public Key getKey() {
+        return new Key(division, year, category);
+    }
+
+    /**
+     * Adds (positive count) or removes (negative count) bookings with the given status to the sums
+     *
+     * @param status of the bookings, nothing is added for null
+     * @param over   whether the seminar is already over
+     */
+    public void add(BookingStatus status, long cost, boolean over, long count) {
+        if (status == BookingStatus.REQUESTED) {
+            requestedBookingCount += count;
+            requestedSpending += cost * count;
+        } else if (status == BookingStatus.GRANTED) {
+            grantedBookingCount += count;
+            grantedSpending += cost * count;
+            if (over) {
+                issuedSpending += cost * count;
+            }
+        }
+    }
+
+    /**
+     * Adds the counts and sums of the other entry
+     */
+    public void add(DivisionRollupEntry other) {
+        requestedBookingCount += other.requestedBookingCount;
+        requestedSpending += other.requestedSpending;
+        grantedBookingCount += other.grantedBookingCount;
+        grantedSpending += other.grantedSpending;
+        issuedSpending += other.issuedSpending;
+        limitValidity(other.validUntil);
+    }
+
+    /**
+     * Whether the counts and sums of both entries are the same
+     */
+    public boolean hasSameSums(DivisionRollupEntry other) {
+        return requestedBookingCount == other.requestedBookingCount && requestedSpending == other.requestedSpending
+                && grantedBookingCount == other.grantedBookingCount && grantedSpending == other.grantedSpending
+                && issuedSpending == other.issuedSpending;
+    }
+
+    /**
+     * Whether the entry doesn't count any bookings
+     */
+    public boolean isEmpty() {
+        return requestedBookingCount == 0 && grantedBookingCount == 0;
+    }
+
+    /**
+     * Shortens the validity of the entry to the given date, if it's earlier
+     */
+    public void limitValidity(Date date) {
+        if (date != null && (validUntil == null || date.before(validUntil))) {
+            validUntil = date;
+        }
+    }
+
+    /**
+     * Whether the sums have to be rebuilt as at least one granted seminar changed from upcoming to over
+     */
+    public boolean isExpired(Date currentDate) {
+        return validUntil != null && validUntil.before(currentDate);
+    }
+
+    /**
+     * Division, year and category of an entry, ordered in that sequence
+     */
+    @Value
+    public static class Key implements Comparable<Key> {
+
+        private final String division;
+        private final int year;
+        private final String category;
+
+        public Key(String division, int year, String category) {
+            this.division = division;
+            this.year = year;
+            this.category = category != null ? category : "";
+        }
+
+        @Override
+        public int compareTo(Key other) {
+            int result = division.compareTo(other.division);
+            if (result == 0) {
+                result = Integer.compare(year, other.year);
+            }
+            return result != 0 ? result : category.compareTo(other.category);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.fh.rosenheim.aline.model.domain;
 
+import lombok.AccessLevel;
 import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
@@ -12,13 +13,17 @@ import org.hibernate.annotations.UpdateTimestamp;
 import javax.persistence.*;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.Objects;
 import java.util.Set;
 
 @Entity
-@Table(name = "seminars")
+@Table(name = "seminars", indexes = {
+        @Index(name = "IDX_SEMINARS_LAST_DATE", columnList = "LAST_DATE"),
+        @Index(name = "IDX_SEMINARS_FIRST_DATE", columnList = "FIRST_DATE")
+})
 @Getter
 @Setter
-@ToString(exclude = {"bookings"})
+@ToString(exclude = {"bookings", "targetLevelIndex", "texts"})
 @EqualsAndHashCode(of = {"id"})
 public class Seminar {
 
@@ -34,11 +39,15 @@ public class Seminar {
 
     private String name;
 
-    @Column(length = 100000)
-    private String description;
-
-    @Column(length = 100000)
-    private String agenda;
+    /**
+     * Description and agenda, which can be very long. Only loaded when one of them is accessed,
+     * so listing seminars, counting seats or billing doesn't read them.
+     */
+    @OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+    @JoinColumn(name = "TEXTS_ID")
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private SeminarTexts texts;
 
     private boolean bookable;
 
@@ -49,6 +58,17 @@ public class Seminar {
     // The employees are grouped in 5 levels, depending on skill in their field
     private int[] targetLevel;
 
+    /**
+     * The target levels as a separate table, so the database can filter seminars by level.
+     * Only maintained via setTargetLevel, the array above stays the source for the DTOs.
+     */
+    @ElementCollection
+    @CollectionTable(name = "seminar_target_levels", joinColumns = @JoinColumn(name = "SEMINAR_ID"))
+    @Column(name = "TARGET_LEVEL")
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private Set<Integer> targetLevelIndex = new HashSet<>();
+
     private String requirements;
 
     private String trainer;
@@ -59,6 +79,12 @@ public class Seminar {
 
     private int maximumParticipants;
 
+    /**
+     * The number of active (non-denied) bookings. Kept up to date by the BookingService, so counting doesn't require
+     * loading all bookings
+     */
+    private int activeBookingCount;
+
     /**
      * In euro cent
      * 1234 = 12,23 Euro
@@ -78,10 +104,80 @@ public class Seminar {
 
     private Date[] dates;
 
+    /**
+     * The earliest and latest of the dates above. Stored separately so the database can filter by date
+     * (the dates themselves are a single binary column). Only maintained via setDates
+     */
+    @Column(name = "FIRST_DATE")
+    @Setter(AccessLevel.NONE)
+    private Date firstDate;
+
+    @Column(name = "LAST_DATE")
+    @Setter(AccessLevel.NONE)
+    private Date lastDate;
+
     private boolean billGenerated;
 
     @CreationTimestamp
     private Date created;
     @UpdateTimestamp
     private Date updated;
+
+    public void setDates(Date[] dates) {
+        this.dates = dates;
+        this.firstDate = null;
+        this.lastDate = null;
+        if (dates != null) {
+            for (Date date : dates) {
+                if (date != null && (firstDate == null || date.before(firstDate))) {
+                    firstDate = date;
+                }
+                if (date != null && (lastDate == null || date.after(lastDate))) {
+                    lastDate = date;
+                }
+            }
+        }
+    }
+
+    public void setTargetLevel(int[] targetLevel) {
+        this.targetLevel = targetLevel;
+        this.targetLevelIndex.clear();
+        if (targetLevel != null) {
+            for (int level : targetLevel) {
+                this.targetLevelIndex.add(level);
+            }
+        }
+    }
+
+    public String getDescription() {
+        return texts == null ? null : texts.getDescription();
+    }
+
+    public void setDescription(String description) {
+        SeminarTexts texts = getOrCreateTexts();
+        if (!Objects.equals(texts.getDescription(), description)) {
+            texts.setDescription(description);
+            // The texts are a separate entity, so the seminar itself has to be marked as updated
+            updated = new Date();
+        }
+    }
+
+    public String getAgenda() {
+        return texts == null ? null : texts.getAgenda();
+    }
+
+    public void setAgenda(String agenda) {
+        SeminarTexts texts = getOrCreateTexts();
+        if (!Objects.equals(texts.getAgenda(), agenda)) {
+            texts.setAgenda(agenda);
+            updated = new Date();
+        }
+    }
+
+    private SeminarTexts getOrCreateTexts() {
+        if (texts == null) {
+            texts = new SeminarTexts();
+        }
+        return texts;
+    }
 }
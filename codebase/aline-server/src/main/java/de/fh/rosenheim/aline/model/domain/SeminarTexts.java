@@ -0,0 +1,30 @@
+package de.fh.rosenheim.aline.model.domain;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
+
+import javax.persistence.*;
+
+/**
+ * The long texts of a seminar, stored in a separate table so they are only read when they are actually needed.
+ * Only accessed via the getters and setters of the {@link Seminar}.
+ */
+@Entity
+@Table(name = "seminar_texts")
+// Lists of seminars that need the texts initialize them together instead of one query per seminar
+@BatchSize(size = 50)
+@Getter
+@Setter
+public class SeminarTexts {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @Column(length = 100000)
+    private String description;
+
+    @Column(length = 100000)
+    private String agenda;
+}
@@ -0,0 +1,117 @@
+package de.fh.rosenheim.aline.model.domain;
+
+import de.fh.rosenheim.aline.model.base.DomainBase;
+import lombok.*;
+
+import javax.persistence.*;
+import java.util.Date;
+
+/**
+ * The precomputed spendings of a single user in a single year, so the totals don't have to be summed up from all
+ * bookings with every request. The entries are updated with every status change of a booking and rebuilt from the
+ * bookings once they expire (see {@link #validUntil}).
+ */
+@Entity
+@Table(name = "spending_ledger", uniqueConstraints =
+@UniqueConstraint(name = "UK_SPENDING_LEDGER_USER_YEAR", columnNames = {"USERNAME", "LEDGER_YEAR"}))
+@Getter
+@Setter
+@EqualsAndHashCode(callSuper = false, of = {"id"})
+@NoArgsConstructor
+public class SpendingLedgerEntry extends DomainBase {
+
+    private static final long serialVersionUID = 6817453350129465203L;
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.AUTO)
+    private Long id;
+
+    @Column(name = "USERNAME", nullable = false)
+    private String username;
+
+    @Column(name = "LEDGER_YEAR")
+    private int year;
+
+    private int bookingCount;
+    private long plannedTotalSpending;
+    private long plannedAdditionalSpending;
+    private long grantedSpending;
+    private long issuedSpending;
+
+    /**
+     * The sums depend on whether the seminars are over, so they have to be rebuilt once the first seminar of the
+     * year ends (or the year of seminars without dates changes). Null if all seminars are already over.
+     */
+    private Date validUntil;
+
+    public SpendingLedgerEntry(String username, int year) {
+        this.username = username;
+        this.year = year;
+    }
+
+    /**
+     * Adds (factor 1) or removes (factor -1) the cost of a booking with the given status to the sums
+     *
+     * @param status of the booking, nothing is added for null
+     * @param over   whether the seminar is already over
+     */
+    public void add(BookingStatus status, long cost, boolean over, int factor) {
+        if (status == null) {
+            return;
+        }
+        bookingCount += factor;
+        long signedCost = cost * factor;
+        boolean granted = status.equals(BookingStatus.GRANTED);
+        // Denied and waitlisted seminars are not planned, past seminars only if they were granted
+        if (status.isActive()) {
+            if (!over) {
+                plannedAdditionalSpending += signedCost;
+                plannedTotalSpending += signedCost;
+            } else if (granted) {
+                plannedTotalSpending += signedCost;
+            }
+        }
+        if (granted) {
+            grantedSpending += signedCost;
+            if (over) {
+                issuedSpending += signedCost;
+            }
+        }
+    }
+
+    /**
+     * Adds the count and sums of the other entry
+     */
+    public void add(SpendingLedgerEntry other) {
+        bookingCount += other.bookingCount;
+        plannedTotalSpending += other.plannedTotalSpending;
+        plannedAdditionalSpending += other.plannedAdditionalSpending;
+        grantedSpending += other.grantedSpending;
+        issuedSpending += other.issuedSpending;
+        limitValidity(other.validUntil);
+    }
+
+    /**
+     * Whether adding the entry wouldn't change the count or any sum
+     */
+    public boolean isEmpty() {
+        return bookingCount == 0 && plannedTotalSpending == 0 && plannedAdditionalSpending == 0
+                && grantedSpending == 0 && issuedSpending == 0;
+    }
+
+    /**
+     * Shortens the validity of the entry to the given date, if it's earlier
+     */
+    public void limitValidity(Date date) {
+        if (date != null && (validUntil == null || date.before(validUntil))) {
+            validUntil = date;
+        }
+    }
+
+    /**
+     * Whether the sums have to be rebuilt as at least one seminar changed from upcoming to over
+     */
+    public boolean isExpired(Date currentDate) {
+        return validUntil != null && validUntil.before(currentDate);
+    }
+}
@@ -7,6 +7,7 @@ import org.hibernate.annotations.OnDeleteAction;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.OneToMany;
 import javax.persistence.Table;
 import java.util.Date;
@@ -15,7 +16,7 @@ import java.util.Set;
 
 @Entity
 @Data
-@Table(name = "users")
+@Table(name = "users", indexes = @Index(name = "IDX_USERS_DIVISION", columnList = "DIVISION"))
 @ToString(exclude = {"bookings"})
 @EqualsAndHashCode(callSuper = true, of = {"username"})
 @Builder()
@@ -4,9 +4,13 @@ import com.fasterxml.jackson.annotation.JsonView;
 import de.fh.rosenheim.aline.model.dtos.json.view.View;
 import de.fh.rosenheim.aline.util.SwaggerTexts;
 import io.swagger.annotations.ApiModelProperty;
+import lombok.AllArgsConstructor;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class DivisionSumDTO {
 
     @JsonView(View.BillView.class)
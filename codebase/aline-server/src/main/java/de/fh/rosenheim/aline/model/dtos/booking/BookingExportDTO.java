@@ -0,0 +1,58 @@
+package de.fh.rosenheim.aline.model.dtos.booking;
+
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import org.apache.commons.lang3.StringEscapeUtils;
+
+import java.util.Date;
+
+/**
+ * A flat row of the booking export, selected directly by the database without loading any entity
+ */
+@Data
+@AllArgsConstructor
+public class BookingExportDTO {
+
+    public static final String CSV_HEADER = "id,status,created,updated,seminarId,seminarName,seminarCost,"
+            + "userName,firstName,lastName,division";
+
+    private long id;
+    private BookingStatus status;
+    private Date created;
+    private Date updated;
+    private long seminarId;
+    private String seminarName;
+    private long seminarCost;
+    private String userName;
+    private String firstName;
+    private String lastName;
+    private String division;
+
+    /**
+     * Returns the row as a single CSV line (without line break), in the order of the {@link #CSV_HEADER}
+     * Dates are written as ISO-8601 instants, texts are quoted if necessary
+     */
+    public String toCsv() {
+        return String.join(",",
+                String.valueOf(id),
+                status == null ? "" : status.name(),
+                toCsv(created),
+                toCsv(updated),
+                String.valueOf(seminarId),
+                toCsv(seminarName),
+                String.valueOf(seminarCost),
+                toCsv(userName),
+                toCsv(firstName),
+                toCsv(lastName),
+                toCsv(division));
+    }
+
+    private static String toCsv(Date date) {
+        return date == null ? "" : date.toInstant().toString();
+    }
+
+    private static String toCsv(String text) {
+        return text == null ? "" : StringEscapeUtils.escapeCsv(text);
+    }
+}
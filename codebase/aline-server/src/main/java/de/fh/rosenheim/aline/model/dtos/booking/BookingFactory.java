@@ -2,15 +2,15 @@ package de.fh.rosenheim.aline.model.dtos.booking;
 
 import de.fh.rosenheim.aline.model.domain.Booking;
 import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.DivisionRollupEntry;
 import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.domain.SpendingLedgerEntry;
 import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFactory;
 import de.fh.rosenheim.aline.model.dtos.user.UserDTO;
 import de.fh.rosenheim.aline.util.DateUtil;
-import de.fh.rosenheim.aline.util.SeminarUtil;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * Generates and transforms all Booking models & DTOs
@@ -48,18 +48,7 @@ public class BookingFactory {
      * @return UserBookingDTO
      */
     public UserBookingDTO toUserBookingDTO(Booking booking) {
-        Seminar seminar = booking.getSeminar();
-        return UserBookingDTO.builder()
-                .id(booking.getId())
-                .status(booking.getStatus())
-                .created(booking.getCreated())
-                .updated(booking.getUpdated())
-                .seminarId(seminar.getId())
-                .seminarName(seminar.getName())
-                .seminarCost(seminar.getCostsPerParticipant())
-                .seminarYear(SeminarUtil.getYear(seminar))
-                .seminarOver(isOver(seminar))
-                .build();
+        return toUserBookingDTO(booking, new SeminarDates(dateUtil.getCurrentDate()));
     }
 
     /**
@@ -69,45 +58,281 @@ public class BookingFactory {
      * @return List of BookingSummaryDTO, sorted by year (current year first)
      */
     public List<BookingSummaryDTO> toBookingSummaryDTOs(Collection<Booking> bookings) {
+        return toBookingSummaryDTOs(bookings, Collections.emptyList());
+    }
+
+    /**
+     * Generates BookingSummaryDTOs for the given bookings, the sums are taken from the spending ledger of the user.
+     * Only the sums of years that are missing in the ledger are computed from the bookings.
+     *
+     * @param bookings a group of bookings that should be grouped by year
+     * @param ledger   the spending ledger of the user the bookings belong to
+     * @return List of BookingSummaryDTO, sorted by year (current year first)
+     */
+    public List<BookingSummaryDTO> toBookingSummaryDTOs(Collection<Booking> bookings,
+                                                        Collection<SpendingLedgerEntry> ledger) {
         List<BookingSummaryDTO> bookingSummaries = new ArrayList<>();
 
         if (bookings == null || bookings.size() == 0) {
             return bookingSummaries;
         }
 
-        // UserBookings grouped by year
-        Map<Integer, List<UserBookingDTO>> sortedBookings = bookings.stream()
-                .map(this::toUserBookingDTO)
-                .collect(Collectors.groupingBy(UserBookingDTO::getSeminarYear));
-
-        sortedBookings.forEach((year, userBookingDTOS) -> bookingSummaries.add(BookingSummaryDTO.builder()
-                .year(year)
-                .bookings(userBookingDTOS)
-                .plannedTotalSpending(userBookingDTOS.stream()
-                        // Remove all denied seminars
-                        .filter(booking -> !booking.getStatus().equals(BookingStatus.DENIED))
-                        // Only allow future or past and granted seminars
-                        .filter(booking -> !booking.isSeminarOver() || booking.getStatus().equals(BookingStatus.GRANTED))
-                        .mapToLong(UserBookingDTO::getSeminarCost).sum())
-                .plannedAdditionalSpending(userBookingDTOS.stream()
-                        .filter(booking -> !booking.getStatus().equals(BookingStatus.DENIED) && !booking.isSeminarOver())
-                        .mapToLong(UserBookingDTO::getSeminarCost).sum())
-                .grantedSpending(userBookingDTOS.stream()
-                        .filter(booking -> booking.getStatus().equals(BookingStatus.GRANTED))
-                        .mapToLong(UserBookingDTO::getSeminarCost).sum())
-                .issuedSpending(userBookingDTOS.stream()
-                        .filter(booking -> booking.getStatus().equals(BookingStatus.GRANTED) && booking.isSeminarOver())
-                        .mapToLong(UserBookingDTO::getSeminarCost).sum())
-                .build()
-        ));
+        // All bookings are grouped in a single pass, a user only has bookings for a few years
+        SeminarDates seminarDates = new SeminarDates(dateUtil.getCurrentDate());
+        List<YearSummary> yearSummaries = new ArrayList<>();
+        for (Booking booking : bookings) {
+            UserBookingDTO userBooking = toUserBookingDTO(booking, seminarDates);
+            getYearSummary(yearSummaries, ledger, userBooking.getSeminarYear()).add(userBooking);
+        }
+
+        for (YearSummary yearSummary : yearSummaries) {
+            bookingSummaries.add(yearSummary.toBookingSummaryDTO());
+        }
 
         bookingSummaries.sort(Comparator.comparingInt(BookingSummaryDTO::getYear).reversed());
 
         return bookingSummaries;
     }
 
-    private boolean isOver(Seminar seminar) {
-        return SeminarUtil.getLastDate(seminar) != null
-                && SeminarUtil.getLastDate(seminar).before(dateUtil.getCurrentDate());
+    /**
+     * Generates BookingSummaryDTOs for all years of the spending ledger, but only the summary of the given year
+     * contains its bookings
+     *
+     * @param bookings the bookings of the user in the given year
+     * @param ledger   the spending ledger of the user the bookings belong to
+     * @return List of BookingSummaryDTO, sorted by year (current year first)
+     */
+    public List<BookingSummaryDTO> toBookingSummaryDTOs(Collection<Booking> bookings,
+                                                        Collection<SpendingLedgerEntry> ledger, int year) {
+        List<BookingSummaryDTO> bookingSummaries = toSpendingSummaryDTOs(ledger);
+        bookingSummaries.removeIf(bookingSummary -> bookingSummary.getYear() == year);
+        bookingSummaries.addAll(toBookingSummaryDTOs(bookings, ledger));
+        bookingSummaries.sort(Comparator.comparingInt(BookingSummaryDTO::getYear).reversed());
+        return bookingSummaries;
+    }
+
+    /**
+     * Generates BookingSummaryDTOs with only the sums of the spending ledger, without the bookings of the years
+     *
+     * @return List of BookingSummaryDTO, sorted by year (current year first)
+     */
+    public List<BookingSummaryDTO> toSpendingSummaryDTOs(Collection<SpendingLedgerEntry> ledger) {
+        List<BookingSummaryDTO> bookingSummaries = new ArrayList<>();
+        for (SpendingLedgerEntry entry : ledger) {
+            // Years whose bookings were all deleted
+            if (entry.getBookingCount() > 0) {
+                bookingSummaries.add(toBookingSummaryDTO(entry, Collections.emptyList()));
+            }
+        }
+        bookingSummaries.sort(Comparator.comparingInt(BookingSummaryDTO::getYear).reversed());
+        return bookingSummaries;
+    }
+
+    /**
+     * Sums up the bookings of the user to a spending ledger with one entry per year
+     */
+    public List<SpendingLedgerEntry> toSpendingLedger(String username, Collection<Booking> bookings) {
+        SeminarDates seminarDates = new SeminarDates(dateUtil.getCurrentDate());
+        List<SpendingLedgerEntry> ledger = new ArrayList<>();
+        for (Booking booking : bookings) {
+            addToEntry(ledger, username, booking.getSeminar(), seminarDates.get(booking.getSeminar()),
+                    booking.getStatus(), 1);
+        }
+        return ledger;
+    }
+
+    /**
+     * Adds (factor 1) or removes (factor -1) a booking of the seminar with the given status to the changes of the
+     * spending ledger of the user, the entry for the year of the seminar is created if needed
+     */
+    public void addToSpendingLedger(Collection<SpendingLedgerEntry> changes, String username, Seminar seminar,
+                                    BookingStatus status, int factor) {
+        addToEntry(changes, username, seminar, new SeminarDates(dateUtil.getCurrentDate()).get(seminar), status,
+                factor);
+    }
+
+    private static void addToEntry(Collection<SpendingLedgerEntry> ledger, String username, Seminar seminar,
+                                   SeminarDate seminarDate, BookingStatus status, int factor) {
+        SpendingLedgerEntry entry = findEntry(ledger, seminarDate.year);
+        if (entry == null) {
+            entry = new SpendingLedgerEntry(username, seminarDate.year);
+            ledger.add(entry);
+        }
+        entry.add(status, seminar.getCostsPerParticipant(), seminarDate.over, factor);
+        entry.limitValidity(seminarDate.validUntil);
+    }
+
+    /**
+     * Sums up the aggregated bookings to a division rollup with one entry per division, year and category
+     */
+    public List<DivisionRollupEntry> toDivisionRollup(Collection<DivisionRollupRowDTO> rows) {
+        SeminarDates seminarDates = new SeminarDates(dateUtil.getCurrentDate());
+        Map<DivisionRollupEntry.Key, DivisionRollupEntry> rollup = new HashMap<>();
+        for (DivisionRollupRowDTO row : rows) {
+            addToEntry(rollup, row.getDivision(), row.getCategory(), seminarDates.get(row.getLastDate()),
+                    row.getStatus(), row.getCosts(), row.getCount());
+        }
+        return new ArrayList<>(rollup.values());
+    }
+
+    /**
+     * Adds (count 1) or removes (count -1) a booking of the seminar with the given status to the changes of the
+     * division rollup, the entry for the division, year and category of the seminar is created if needed
+     */
+    public void addToDivisionRollup(Map<DivisionRollupEntry.Key, DivisionRollupEntry> changes, String division,
+                                    Seminar seminar, BookingStatus status, int count) {
+        addToEntry(changes, division, seminar.getCategory(), new SeminarDates(dateUtil.getCurrentDate()).get(seminar),
+                status, seminar.getCostsPerParticipant(), count);
+    }
+
+    private static void addToEntry(Map<DivisionRollupEntry.Key, DivisionRollupEntry> rollup, String division,
+                                   String category, SeminarDate seminarDate, BookingStatus status, long cost,
+                                   long count) {
+        DivisionRollupEntry entry = rollup.computeIfAbsent(
+                new DivisionRollupEntry.Key(division, seminarDate.year, category),
+                key -> new DivisionRollupEntry(key.getDivision(), key.getYear(), key.getCategory()));
+        entry.add(status, cost, seminarDate.over, count);
+        if (status == BookingStatus.GRANTED) {
+            // Only the issued spendings depend on the end of the seminar
+            entry.limitValidity(seminarDate.validUntil);
+        }
+    }
+
+    private static SpendingLedgerEntry findEntry(Collection<SpendingLedgerEntry> ledger, int year) {
+        for (SpendingLedgerEntry entry : ledger) {
+            if (entry.getYear() == year) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static BookingSummaryDTO toBookingSummaryDTO(SpendingLedgerEntry spending, List<UserBookingDTO> bookings) {
+        return BookingSummaryDTO.builder()
+                .year(spending.getYear())
+                .bookings(bookings)
+                .plannedTotalSpending(spending.getPlannedTotalSpending())
+                .plannedAdditionalSpending(spending.getPlannedAdditionalSpending())
+                .grantedSpending(spending.getGrantedSpending())
+                .issuedSpending(spending.getIssuedSpending())
+                .build();
+    }
+
+    private UserBookingDTO toUserBookingDTO(Booking booking, SeminarDates seminarDates) {
+        Seminar seminar = booking.getSeminar();
+        SeminarDate seminarDate = seminarDates.get(seminar);
+        return UserBookingDTO.builder()
+                .id(booking.getId())
+                .status(booking.getStatus())
+                .created(booking.getCreated())
+                .updated(booking.getUpdated())
+                .seminarId(seminar.getId())
+                .seminarName(seminar.getName())
+                .seminarCost(seminar.getCostsPerParticipant())
+                .seminarYear(seminarDate.year)
+                .seminarOver(seminarDate.over)
+                .build();
+    }
+
+    private static YearSummary getYearSummary(List<YearSummary> yearSummaries,
+                                              Collection<SpendingLedgerEntry> ledger, int year) {
+        for (YearSummary yearSummary : yearSummaries) {
+            if (yearSummary.spending.getYear() == year) {
+                return yearSummary;
+            }
+        }
+        SpendingLedgerEntry entry = findEntry(ledger, year);
+        YearSummary yearSummary = entry != null
+                ? new YearSummary(entry, false)
+                : new YearSummary(new SpendingLedgerEntry(null, year), true);
+        yearSummaries.add(yearSummary);
+        return yearSummary;
+    }
+
+    /**
+     * Year, over flag and validity of the seminars, computed only once per seminar and conversion
+     * (identity based, as unsaved seminars don't have a usable id)
+     */
+    private static class SeminarDates {
+
+        private final Date currentDate;
+        private final Calendar calendar = Calendar.getInstance();
+        private final Map<Seminar, SeminarDate> dates = new IdentityHashMap<>();
+
+        SeminarDates(Date currentDate) {
+            this.currentDate = currentDate;
+        }
+
+        SeminarDate get(Seminar seminar) {
+            SeminarDate seminarDate = dates.get(seminar);
+            if (seminarDate == null) {
+                seminarDate = get(seminar.getLastDate());
+                dates.put(seminar, seminarDate);
+            }
+            return seminarDate;
+        }
+
+        SeminarDate get(Date lastDate) {
+            // Same as SeminarUtil.getYear, seminars without dates belong to the current year
+            calendar.setTimeInMillis(lastDate != null ? lastDate.getTime() : System.currentTimeMillis());
+            int year = calendar.get(Calendar.YEAR);
+            boolean over = lastDate != null && lastDate.before(currentDate);
+            return new SeminarDate(year, over, over ? null : getValidUntil(lastDate));
+        }
+
+        /**
+         * Upcoming seminars are over after their last date, seminars without dates move to the next year
+         */
+        private Date getValidUntil(Date lastDate) {
+            if (lastDate != null) {
+                return lastDate;
+            }
+            calendar.setTime(currentDate);
+            calendar.set(calendar.get(Calendar.YEAR) + 1, Calendar.JANUARY, 1, 0, 0, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            return calendar.getTime();
+        }
+    }
+
+    private static class SeminarDate {
+
+        private final int year;
+        private final boolean over;
+        /**
+         * Until when year and over flag stay the same, null if they never change
+         */
+        private final Date validUntil;
+
+        SeminarDate(int year, boolean over, Date validUntil) {
+            this.year = year;
+            this.over = over;
+            this.validUntil = validUntil;
+        }
+    }
+
+    /**
+     * Collects the bookings of a single year, the spendings are only summed up if they are not in the ledger
+     */
+    private static class YearSummary {
+
+        private final SpendingLedgerEntry spending;
+        private final boolean computed;
+        private final List<UserBookingDTO> bookings = new ArrayList<>();
+
+        YearSummary(SpendingLedgerEntry spending, boolean computed) {
+            this.spending = spending;
+            this.computed = computed;
+        }
+
+        void add(UserBookingDTO booking) {
+            bookings.add(booking);
+            if (computed) {
+                spending.add(booking.getStatus(), booking.getSeminarCost(), booking.isSeminarOver(), 1);
+            }
+        }
+
+        BookingSummaryDTO toBookingSummaryDTO() {
+            return BookingFactory.toBookingSummaryDTO(spending, bookings);
+        }
     }
 }
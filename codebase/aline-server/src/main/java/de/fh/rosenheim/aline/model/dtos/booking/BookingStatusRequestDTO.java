@@ -0,0 +1,29 @@
+package de.fh.rosenheim.aline.model.dtos.booking;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import de.fh.rosenheim.aline.model.base.ModelBase;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Getter;
+import lombok.Setter;
+
+import javax.validation.constraints.NotNull;
+import java.util.List;
+
+/**
+ * Sets the status of all given bookings at once (only GRANTED or DENIED)
+ */
+@Getter
+@Setter
+public class BookingStatusRequestDTO extends ModelBase {
+
+    @NotNull
+    @JsonProperty(value = "status", required = true)
+    @ApiModelProperty(required = true, allowableValues = "GRANTED, DENIED")
+    private BookingStatus status;
+
+    @NotNull
+    @JsonProperty(value = "bookingIds", required = true)
+    @ApiModelProperty(required = true)
+    private List<Long> bookingIds;
+}
@@ -0,0 +1,24 @@
+package de.fh.rosenheim.aline.model.dtos.booking;
+
+import de.fh.rosenheim.aline.model.base.ModelBase;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Result of a status change of a single booking, the error is null if the change succeeded.
+ * The status is the status of the booking after the request, null if it doesn't exist or the current user is not
+ * allowed to change it. The id is null for an entry of the request without an id.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class BookingStatusResultDTO extends ModelBase {
+
+    private Long id;
+    private BookingStatus status;
+    private String error;
+}
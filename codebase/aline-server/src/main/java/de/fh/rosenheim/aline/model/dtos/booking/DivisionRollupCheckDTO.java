@@ -0,0 +1,23 @@
+package de.fh.rosenheim.aline.model.dtos.booking;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The result of rebuilding the division rollup from all bookings
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DivisionRollupCheckDTO {
+
+    /**
+     * Number of entries after the rebuild
+     */
+    private int entries;
+    /**
+     * Number of entries that were missing, superfluous or had different sums before the rebuild
+     */
+    private int corrected;
+}
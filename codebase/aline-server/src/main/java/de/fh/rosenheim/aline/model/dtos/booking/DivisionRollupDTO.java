@@ -0,0 +1,28 @@
+package de.fh.rosenheim.aline.model.dtos.booking;
+
+import de.fh.rosenheim.aline.util.SwaggerTexts;
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * The spendings and booking counts of a division for all seminars of a category in a single year
+ */
+@Data
+@Builder
+public class DivisionRollupDTO {
+
+    private String division;
+    private int year;
+    private String category;
+    @ApiModelProperty(notes = SwaggerTexts.REQUESTED_BOOKING_COUNT)
+    private long requestedBookingCount;
+    @ApiModelProperty(notes = SwaggerTexts.REQUESTED_SPENDING)
+    private long requestedSpending;
+    @ApiModelProperty(notes = SwaggerTexts.GRANTED_BOOKING_COUNT)
+    private long grantedBookingCount;
+    @ApiModelProperty(notes = SwaggerTexts.GRANTED_SPENDING)
+    private long grantedSpending;
+    @ApiModelProperty(notes = SwaggerTexts.ISSUED_SPENDING)
+    private long issuedSpending;
+}
@@ -0,0 +1,24 @@
+package de.fh.rosenheim.aline.model.dtos.booking;
+
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * The number of bookings with the same status for a single seminar and division, used to rebuild the division rollup
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DivisionRollupRowDTO {
+
+    private String division;
+    private String category;
+    private Date lastDate;
+    private long costs;
+    private BookingStatus status;
+    private long count;
+}
@@ -0,0 +1,26 @@
+package de.fh.rosenheim.aline.model.dtos.booking;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Date;
+
+/**
+ * A booking waiting for approval, with just enough data about user and seminar to decide about it
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PendingBookingDTO {
+
+    private long id;
+    private Date created;
+    private String userName;
+    private String firstName;
+    private String lastName;
+    private long seminarId;
+    private String seminarName;
+    private long costsPerParticipant;
+    private Date firstDate;
+}
@@ -7,7 +7,15 @@ public class View {
     }
 
 
-    public interface SeminarBasicsView {
+    /**
+     * The short seminar data, without long texts like description or agenda
+     */
+    public interface SeminarSummaryView {
+
+    }
+
+
+    public interface SeminarBasicsView extends SeminarSummaryView {
 
     }
 
@@ -22,6 +30,14 @@ public class View {
     }
 
 
+    /**
+     * Everything of a seminar except the long texts, for seminar lists
+     */
+    public interface SeminarListView extends SeminarSummaryView, SeminarIdView {
+
+    }
+
+
     public interface BookingSummaryView extends UserBasicsView, SeminarIdView {
 
     }
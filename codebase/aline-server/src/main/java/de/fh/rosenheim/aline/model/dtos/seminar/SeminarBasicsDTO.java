@@ -9,10 +9,14 @@ import lombok.Data;
 import javax.validation.constraints.NotNull;
 import java.util.Date;
 
+/**
+ * The data of a seminar that can be set by the front office.
+ * Long texts are only part of the SeminarBasicsView, everything else is already part of the SeminarSummaryView.
+ */
 @Data
 public class SeminarBasicsDTO {
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     @NotNull
     @ApiModelProperty(required = true)
     private String name;
@@ -23,32 +27,32 @@ public class SeminarBasicsDTO {
     @JsonView(View.SeminarBasicsView.class)
     private String agenda;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private boolean bookable;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     @ApiModelProperty(required = true)
     private String category;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private int[] targetLevel;
 
     @JsonView(View.SeminarBasicsView.class)
     private String requirements;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private String trainer;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private String contactPerson;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private String trainingType;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private int maximumParticipants;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     @ApiModelProperty(notes = SwaggerTexts.CURRENCY)
     private long costsPerParticipant;
 
@@ -58,12 +62,12 @@ public class SeminarBasicsDTO {
     @JsonView(View.SeminarBasicsView.class)
     private String goal;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private String duration;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private String cycle;
 
-    @JsonView(View.SeminarBasicsView.class)
+    @JsonView(View.SeminarSummaryView.class)
     private Date[] dates;
 }
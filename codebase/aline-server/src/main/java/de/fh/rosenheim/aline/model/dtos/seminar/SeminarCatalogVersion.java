@@ -0,0 +1,31 @@
+package de.fh.rosenheim.aline.model.dtos.seminar;
+
+import lombok.Data;
+
+import java.util.Date;
+
+/**
+ * Everything that changes when the seminar lists change, queried with a single aggregate over the seminars.
+ * New and updated seminars change the latest update, deleted seminars the count and seminars that are over the
+ * past count.
+ */
+@Data
+public class SeminarCatalogVersion {
+
+    private final Date lastUpdate;
+    private final long seminarCount;
+    private final long pastSeminarCount;
+
+    public SeminarCatalogVersion(Date lastUpdate, Long seminarCount, Long pastSeminarCount) {
+        this.lastUpdate = lastUpdate;
+        this.seminarCount = seminarCount == null ? 0 : seminarCount;
+        this.pastSeminarCount = pastSeminarCount == null ? 0 : pastSeminarCount;
+    }
+
+    /**
+     * Returns the version as ETag value
+     */
+    public String toETag() {
+        return (lastUpdate == null ? 0 : lastUpdate.getTime()) + "-" + seminarCount + "-" + pastSeminarCount;
+    }
+}
@@ -17,16 +17,16 @@ public class SeminarDTO extends SeminarBasicsDTO {
     /**
      * The number of non-denied bookings (meaning all granted and requested bookings)
      */
-    @JsonView(View.SeminarDetailsView.class)
+    @JsonView({View.SeminarDetailsView.class, View.SeminarListView.class})
     @ApiModelProperty(notes = SwaggerTexts.ACTIVE_BOOKINGS)
     private int activeBookings;
 
-    @JsonView(View.SeminarDetailsView.class)
+    @JsonView({View.SeminarDetailsView.class, View.SeminarListView.class})
     private Date created;
 
-    @JsonView(View.SeminarDetailsView.class)
+    @JsonView({View.SeminarDetailsView.class, View.SeminarListView.class})
     private boolean billGenerated;
 
-    @JsonView(View.SeminarDetailsView.class)
+    @JsonView({View.SeminarDetailsView.class, View.SeminarListView.class})
     private Date updated;
 }
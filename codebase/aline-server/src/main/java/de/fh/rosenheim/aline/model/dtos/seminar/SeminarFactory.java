@@ -1,7 +1,6 @@
 package de.fh.rosenheim.aline.model.dtos.seminar;
 
 import de.fh.rosenheim.aline.model.domain.Seminar;
-import de.fh.rosenheim.aline.util.SeminarUtil;
 
 /**
  * Generates and transforms all Seminar models & DTOs
@@ -14,12 +13,24 @@ public class SeminarFactory {
      * @return SeminarDTO
      */
     public static SeminarDTO toSeminarDTO(Seminar seminar) {
+        SeminarDTO dto = toSeminarSummaryDTO(seminar);
+        if (seminar != null) {
+            dto.setDescription(seminar.getDescription());
+            dto.setAgenda(seminar.getAgenda());
+        }
+        return dto;
+    }
+
+    /**
+     * Generates a SeminarDTO without description and agenda (SeminarListView), which therefore don't have to be loaded
+     *
+     * @return SeminarDTO
+     */
+    public static SeminarDTO toSeminarSummaryDTO(Seminar seminar) {
         SeminarDTO dto = new SeminarDTO();
         if (seminar != null) {
             dto.setName(seminar.getName());
-            dto.setDescription(seminar.getDescription());
             dto.setTrainer(seminar.getTrainer());
-            dto.setAgenda(seminar.getAgenda());
             dto.setBookable(seminar.isBookable());
             dto.setCategory(seminar.getCategory());
             dto.setTargetLevel(seminar.getTargetLevel());
@@ -34,7 +45,7 @@ public class SeminarFactory {
             dto.setCycle(seminar.getCycle());
             dto.setDates(seminar.getDates());
             dto.setBillGenerated(seminar.isBillGenerated());
-            dto.setActiveBookings(SeminarUtil.getActiveBookingCount(seminar));
+            dto.setActiveBookings(seminar.getActiveBookingCount());
             dto.setCreated(seminar.getCreated());
             dto.setUpdated(seminar.getUpdated());
             dto.setId(seminar.getId());
@@ -0,0 +1,31 @@
+package de.fh.rosenheim.aline.model.dtos.seminar;
+
+import io.swagger.annotations.ApiModelProperty;
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.util.Date;
+
+/**
+ * Optional filters for querying seminars. Properties that are not set are ignored.
+ */
+@Data
+public class SeminarFilterDTO {
+
+    @ApiModelProperty(notes = "Only seminars of this category")
+    private String category;
+
+    @ApiModelProperty(notes = "Only seminars for this target level")
+    private Integer targetLevel;
+
+    @ApiModelProperty(notes = "Only seminars that are (or are not) bookable")
+    private Boolean bookable;
+
+    @ApiModelProperty(notes = "Only seminars with a date on or after this date (yyyy-MM-dd)")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private Date from;
+
+    @ApiModelProperty(notes = "Only seminars with a date on or before this date (yyyy-MM-dd)")
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private Date to;
+}
@@ -33,4 +33,14 @@ public class UserDTO {
 
     @ApiModelProperty(position = 5)
     List<BookingSummaryDTO> bookings;
+
+    /**
+     * Creates a DTO with only the basic user data, used for projections in queries
+     */
+    public UserDTO(String userName, String firstName, String lastName, String division) {
+        this.userName = userName;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.division = division;
+    }
 }
@@ -1,5 +1,7 @@
 package de.fh.rosenheim.aline.model.dtos.user;
 
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.SpendingLedgerEntry;
 import de.fh.rosenheim.aline.model.domain.User;
 import de.fh.rosenheim.aline.model.dtos.booking.BookingFactory;
 import de.fh.rosenheim.aline.model.dtos.booking.BookingSummaryDTO;
@@ -8,8 +10,12 @@ import org.springframework.security.core.authority.AuthorityUtils;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.StreamSupport;
 
 /**
  * Generates and transforms all User models & DTOs
@@ -29,9 +35,36 @@ public class UserFactory {
      * @return UserDTO
      */
     public UserDTO toUserDTO(User user) {
+        return toUserDTO(user, Collections.emptyList());
+    }
+
+    /**
+     * Generate a UserDTO from the given user, the spendings are taken from the spending ledger of the user
+     *
+     * @return UserDTO
+     */
+    public UserDTO toUserDTO(User user, Collection<SpendingLedgerEntry> ledger) {
         if (user == null) {
             return null;
         }
+        return toUserDTOWithSummaries(user, bookingFactory.toBookingSummaryDTOs(user.getBookings(), ledger));
+    }
+
+    /**
+     * Generate a UserDTO from the given user with the spendings of all years from the spending ledger, but only the
+     * bookings of a single year (the other bookings of the user are not loaded)
+     *
+     * @param bookings the bookings of the user in the given year
+     * @return UserDTO
+     */
+    public UserDTO toUserDTO(User user, Collection<Booking> bookings, int year, Collection<SpendingLedgerEntry> ledger) {
+        if (user == null) {
+            return null;
+        }
+        return toUserDTOWithSummaries(user, bookingFactory.toBookingSummaryDTOs(bookings, ledger, year));
+    }
+
+    private static UserDTO toUserDTOWithSummaries(User user, List<BookingSummaryDTO> bookings) {
         UserDTO dto = new UserDTO();
         dto.setUserName(user.getUsername());
         dto.setAuthorities(
@@ -44,10 +77,56 @@ public class UserFactory {
         dto.setDivision(user.getDivision());
         dto.setFirstName(user.getFirstName());
         dto.setLastName(user.getLastName());
-
-        List<BookingSummaryDTO> bookings = bookingFactory.toBookingSummaryDTOs(user.getBookings());
         dto.setBookings(bookings);
 
         return dto;
     }
+
+    /**
+     * Generate a UserDTO with only the basic data (UserBasicsView) of the given user, without authorities and bookings
+     *
+     * @return UserDTO
+     */
+    public UserDTO toUserBasicsDTO(User user) {
+        if (user == null) {
+            return null;
+        }
+        return new UserDTO(user.getUsername(), user.getFirstName(), user.getLastName(), user.getDivision());
+    }
+
+    /**
+     * Generate a UserDTO with the basic data of the given user and the spendings per year of the spending ledger,
+     * the summaries don't contain the bookings
+     *
+     * @return UserDTO
+     */
+    public UserDTO toUserSpendingDTO(User user, Collection<SpendingLedgerEntry> ledger) {
+        UserDTO dto = toUserBasicsDTO(user);
+        if (dto != null) {
+            dto.setBookings(bookingFactory.toSpendingSummaryDTOs(ledger));
+        }
+        return dto;
+    }
+
+    /**
+     * Generate UserDTOs for all given users
+     * The bookings (and their seminars) of the users should already be loaded to avoid a query per user
+     *
+     * @return List of UserDTO in the same order as the users
+     */
+    public List<UserDTO> toUserDTOs(Iterable<User> users) {
+        return toUserDTOs(users, Collections.emptyMap());
+    }
+
+    /**
+     * Generate UserDTOs for all given users, the spendings are taken from the spending ledgers by username
+     *
+     * @return List of UserDTO in the same order as the users
+     */
+    public List<UserDTO> toUserDTOs(Iterable<User> users, Map<String, List<SpendingLedgerEntry>> ledgers) {
+        return StreamSupport
+                .stream(users.spliterator(), false)
+                .map(user -> toUserDTO(user, ledgers.getOrDefault(user.getUsername(), Collections.emptyList())))
+                .collect(Collectors.toList());
+    }
 }
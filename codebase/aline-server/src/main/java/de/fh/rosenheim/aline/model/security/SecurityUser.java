@@ -1,11 +1,16 @@
 package de.fh.rosenheim.aline.model.security;
 
+import de.fh.rosenheim.aline.security.utils.Authority;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.EnumSet;
 
 /**
  * Implementation of UserDetails, which is required for Spring Security
@@ -19,6 +24,12 @@ public class SecurityUser implements UserDetails {
     private Date lastPasswordReset;
     private Date lastLogout;
     private Collection<? extends GrantedAuthority> authorities;
+    /**
+     * The authorities as EnumSet, updated together with {@link #authorities} for allocation free permission checks
+     */
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private EnumSet<Authority> authoritySet = EnumSet.noneOf(Authority.class);
     private Boolean accountNonExpired = true;
     private Boolean accountNonLocked = true;
     private Boolean credentialsNonExpired = true;
@@ -43,6 +54,15 @@ public class SecurityUser implements UserDetails {
         return this.authorities;
     }
 
+    public void setAuthorities(Collection<? extends GrantedAuthority> authorities) {
+        this.authorities = authorities;
+        this.authoritySet = Authority.of(authorities);
+    }
+
+    public boolean hasAuthority(Authority authority) {
+        return this.authoritySet.contains(authority);
+    }
+
     @Override
     public boolean isAccountNonExpired() {
         return this.getAccountNonExpired();
@@ -1,13 +1,131 @@
 package de.fh.rosenheim.aline.repository;
 
 import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.dtos.bill.DivisionSumDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingExportDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupRowDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.PendingBookingDTO;
+import de.fh.rosenheim.aline.model.dtos.user.UserDTO;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.stream.Stream;
 
 @RepositoryRestResource(exported = false)
 public interface BookingRepository extends CrudRepository<Booking, Long> {
 
     List<Booking> findBySeminarId(long id);
+
+    /**
+     * Returns the booking of the user for the seminar (there can only be one), uses the unique index on both.
+     * Both are compared by their foreign keys, so neither users nor seminars are joined.
+     */
+    @Query("select b from Booking b where b.user.username = ?1 and b.seminar.id = ?2")
+    Booking findByUserUsernameAndSeminarId(String username, long seminarId);
+
+    /**
+     * Returns all bookings of the user together with their seminars in a single query
+     */
+    @Query("select b from Booking b join fetch b.seminar where b.user.username = ?1")
+    List<Booking> findWithSeminarByUserUsername(String username);
+
+    /**
+     * Returns the bookings of the user for seminars ending in the given period (from inclusive, to exclusive)
+     * together with their seminars in a single query
+     */
+    @Query("select b from Booking b join fetch b.seminar s where b.user.username = ?1 "
+            + "and s.lastDate >= ?2 and s.lastDate < ?3")
+    List<Booking> findWithSeminarByUserUsernameAndLastDateBetween(String username, Date from, Date to);
+
+    /**
+     * Same as {@link #findWithSeminarByUserUsernameAndLastDateBetween(String, Date, Date)}, including the bookings
+     * for seminars without dates
+     */
+    @Query("select b from Booking b join fetch b.seminar s where b.user.username = ?1 "
+            + "and (s.lastDate >= ?2 and s.lastDate < ?3 or s.lastDate is null)")
+    List<Booking> findWithSeminarByUserUsernameAndLastDateBetweenOrUndated(String username, Date from, Date to);
+
+    long countByUserUsername(String username);
+
+    /**
+     * Returns the oldest booking of the seminar with the given status.
+     * A waitlisted booking is not changed until it leaves the waitlist, so the update date is the date it was
+     * put on the waitlist.
+     */
+    Booking findFirstBySeminarIdAndStatusOrderByUpdatedAscIdAsc(long seminarId, BookingStatus status);
+
+    /**
+     * Returns a page of the bookings with the given status of all users in the division, without loading any entity
+     */
+    @Query(value = "select new de.fh.rosenheim.aline.model.dtos.booking.PendingBookingDTO(b.id, b.created, "
+            + "u.username, u.firstName, u.lastName, s.id, s.name, s.costsPerParticipant, s.firstDate) "
+            + "from Booking b join b.user u join b.seminar s where b.status = ?1 and u.division = ?2",
+            countQuery = "select count(b) from Booking b join b.user u where b.status = ?1 and u.division = ?2")
+    Page<PendingBookingDTO> findByStatusAndUserDivision(BookingStatus status, String division, Pageable pageable);
+
+    /**
+     * Returns only the ID of the seminar of the booking, without loading any entity
+     */
+    @Query("select b.seminar.id from Booking b where b.id = ?1")
+    Long findSeminarIdById(long id);
+
+    /**
+     * Returns the distinct IDs of the seminars of the bookings, without loading any entity
+     */
+    @Query("select distinct b.seminar.id from Booking b where b.id in ?1")
+    List<Long> findSeminarIdsByIdIn(Collection<Long> ids);
+
+    /**
+     * Returns the basic data of all users with a booking of the given status for the seminar, sorted by name.
+     * Only the user columns are selected, so no user entity and none of their bookings are loaded.
+     */
+    @Query("select new de.fh.rosenheim.aline.model.dtos.user.UserDTO(u.username, u.firstName, u.lastName, u.division) "
+            + "from Booking b join b.user u where b.seminar.id = ?1 and b.status = ?2 order by u.lastName, u.firstName")
+    List<UserDTO> findUsersBySeminarIdAndStatus(long seminarId, BookingStatus status);
+
+    /**
+     * Sums up the costs of all bookings of the given status for the seminar, grouped by the division of the users
+     */
+    @Query("select new de.fh.rosenheim.aline.model.dtos.bill.DivisionSumDTO(u.division, sum(s.costsPerParticipant)) "
+            + "from Booking b join b.user u join b.seminar s where s.id = ?1 and b.status = ?2 group by u.division")
+    List<DivisionSumDTO> sumCostsBySeminarIdAndStatusGroupByDivision(long seminarId, BookingStatus status);
+
+    /**
+     * Counts the bookings with one of the given statuses of the division per seminar and status, for rebuilding the
+     * division rollup without loading any booking
+     */
+    @Query("select new de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupRowDTO(u.division, s.category, "
+            + "s.lastDate, s.costsPerParticipant, b.status, count(b)) from Booking b join b.user u join b.seminar s "
+            + "where u.division = ?1 and b.status in ?2 "
+            + "group by u.division, s.id, s.category, s.lastDate, s.costsPerParticipant, b.status")
+    List<DivisionRollupRowDTO> countForDivisionRollup(String division, Collection<BookingStatus> statuses);
+
+    /**
+     * Same as {@link #countForDivisionRollup(String, Collection)} for all divisions
+     */
+    @Query("select new de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupRowDTO(u.division, s.category, "
+            + "s.lastDate, s.costsPerParticipant, b.status, count(b)) from Booking b join b.user u join b.seminar s "
+            + "where u.division is not null and b.status in ?1 "
+            + "group by u.division, s.id, s.category, s.lastDate, s.costsPerParticipant, b.status")
+    List<DivisionRollupRowDTO> countForDivisionRollup(Collection<BookingStatus> statuses);
+
+    /**
+     * Streams all bookings with the data of their seminar and user as flat rows, sorted by ID.
+     * The rows are fetched in chunks while the stream is consumed, which must happen inside of a transaction.
+     * The stream has to be closed afterwards.
+     */
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select new de.fh.rosenheim.aline.model.dtos.booking.BookingExportDTO(b.id, b.status, b.created, "
+            + "b.updated, s.id, s.name, s.costsPerParticipant, u.username, u.firstName, u.lastName, u.division) "
+            + "from Booking b join b.seminar s join b.user u order by b.id")
+    Stream<BookingExportDTO> streamAllForExport();
 }
@@ -0,0 +1,49 @@
+package de.fh.rosenheim.aline.repository;
+
+import de.fh.rosenheim.aline.model.domain.DivisionRollupEntry;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.List;
+
+@RepositoryRestResource(exported = false)
+public interface DivisionRollupRepository extends CrudRepository<DivisionRollupEntry, Long> {
+
+    List<DivisionRollupEntry> findByDivision(String division);
+
+    long countByDivision(String division);
+
+    /**
+     * Locks the entry until the end of the transaction, used to serialize all updates of the entry
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from DivisionRollupEntry e where e.division = ?1 and e.year = ?2 and e.category = ?3")
+    DivisionRollupEntry findOneForUpdate(String division, int year, String category);
+
+    /**
+     * Removes all entries of the division, they are rebuilt with the next read
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from DivisionRollupEntry e where e.division = ?1")
+    int deleteByDivision(String division);
+
+    /**
+     * Removes the entries of all divisions with a booking for the seminar, they are rebuilt with the next read
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from DivisionRollupEntry e where e.division in " +
+            "(select b.user.division from Booking b where b.seminar.id = ?1)")
+    int deleteBySeminarId(long seminarId);
+
+    @Modifying
+    @Transactional
+    @Query("delete from DivisionRollupEntry e")
+    int deleteAllEntries();
+}
@@ -404,5 +404,7 @@ public class PersistenceConfiguration extends JpaRepositoryConfigExtension {
                 booking12,
                 booking13
         ));
+        // The bookings were saved directly, so the counters of the seminars have to be set
+        seminarRepository.recountActiveBookings(BookingStatus.ACTIVE);
     }
 }
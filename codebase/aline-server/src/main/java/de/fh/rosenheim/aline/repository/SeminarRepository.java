@@ -1,13 +1,66 @@
 package de.fh.rosenheim.aline.repository;
 
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
 import de.fh.rosenheim.aline.model.domain.Seminar;
-import org.springframework.data.repository.CrudRepository;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarCatalogVersion;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
 
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
 
 @RepositoryRestResource(exported = false)
-public interface SeminarRepository extends CrudRepository<Seminar, Long> {
+public interface SeminarRepository extends PagingAndSortingRepository<Seminar, Long>, JpaSpecificationExecutor<Seminar> {
 
     List<Seminar> findByNameLike(String name);
+
+    /**
+     * Loads the seminar and holds a write lock on its row until the surrounding transaction ends.
+     * Used to serialize all changes to the seats of a single seminar.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Seminar s where s.id = ?1")
+    Seminar findOneForUpdate(Long id);
+
+    /**
+     * Locks all seminars with the given IDs, in the order of their IDs (see {@link #findOneForUpdate(Long)})
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from Seminar s where s.id in ?1 order by s.id")
+    List<Seminar> findAllForUpdate(Collection<Long> ids);
+
+    /**
+     * Recalculates the active booking count of all seminars from the bookings table
+     *
+     * @param activeStatuses the status of all bookings that should be counted
+     */
+    @Modifying
+    @Transactional
+    @Query("update Seminar s set s.activeBookingCount = " +
+            "(select count(b) from Booking b where b.seminar = s and b.status in ?1)")
+    int recountActiveBookings(Collection<BookingStatus> activeStatuses);
+
+    /**
+     * Marks the bills of the given seminars as generated with a single statement.
+     * The persistence context is cleared afterwards, as loaded seminars are outdated then.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("update Seminar s set s.billGenerated = true, s.updated = current_timestamp where s.id in ?1")
+    int markBillsGenerated(Collection<Long> ids);
+
+    /**
+     * Returns the current version of all seminars, without loading any of them
+     *
+     * @param date seminars with a last date up to this date are counted as past seminars
+     */
+    @Query("select new de.fh.rosenheim.aline.model.dtos.seminar.SeminarCatalogVersion(max(s.updated), count(s), "
+            + "sum(case when s.lastDate <= ?1 then 1 else 0 end)) from Seminar s")
+    SeminarCatalogVersion findCatalogVersion(Date date);
 }
@@ -0,0 +1,55 @@
+package de.fh.rosenheim.aline.repository;
+
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFilterDTO;
+import org.springframework.data.jpa.domain.Specification;
+
+import javax.persistence.criteria.Predicate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Query criteria for seminars, so filtering is done by the database and not in memory
+ */
+public class SeminarSpecifications {
+
+    /**
+     * Matches all seminars that fulfill every set property of the filter
+     *
+     * @param filter the filter, null matches all seminars
+     */
+    public static Specification<Seminar> matching(SeminarFilterDTO filter) {
+        return (root, query, builder) -> {
+            if (filter == null) {
+                return builder.and();
+            }
+
+            List<Predicate> predicates = new ArrayList<>();
+
+            if (filter.getCategory() != null && filter.getCategory().length() > 0) {
+                predicates.add(builder.equal(root.get("category"), filter.getCategory()));
+            }
+
+            if (filter.getBookable() != null) {
+                predicates.add(builder.equal(root.get("bookable"), filter.getBookable()));
+            }
+
+            // A seminar lies in the date range if its dates overlap with it
+            if (filter.getFrom() != null) {
+                predicates.add(builder.greaterThanOrEqualTo(root.get("lastDate"), filter.getFrom()));
+            }
+
+            if (filter.getTo() != null) {
+                predicates.add(builder.lessThanOrEqualTo(root.get("firstDate"), filter.getTo()));
+            }
+
+            if (filter.getTargetLevel() != null) {
+                // The join can match more than one row per seminar
+                query.distinct(true);
+                predicates.add(builder.equal(root.join("targetLevelIndex"), filter.getTargetLevel()));
+            }
+
+            return builder.and(predicates.toArray(new Predicate[predicates.size()]));
+        };
+    }
+}
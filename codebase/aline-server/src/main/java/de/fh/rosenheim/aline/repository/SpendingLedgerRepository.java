@@ -0,0 +1,47 @@
+package de.fh.rosenheim.aline.repository;
+
+import de.fh.rosenheim.aline.model.domain.SpendingLedgerEntry;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.List;
+
+@RepositoryRestResource(exported = false)
+public interface SpendingLedgerRepository extends CrudRepository<SpendingLedgerEntry, Long> {
+
+    List<SpendingLedgerEntry> findByUsername(String username);
+
+    List<SpendingLedgerEntry> findByUsernameIn(Collection<String> usernames);
+
+    long countByUsername(String username);
+
+    /**
+     * Locks all entries of the user until the end of the transaction, used to serialize all updates of the entries
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select e from SpendingLedgerEntry e where e.username = ?1 order by e.year")
+    List<SpendingLedgerEntry> findByUsernameForUpdate(String username);
+
+    /**
+     * Removes all entries of the user, they are rebuilt with the next read
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from SpendingLedgerEntry e where e.username = ?1")
+    int deleteByUsername(String username);
+
+    /**
+     * Removes the entries of all users with a booking for the seminar, they are rebuilt with the next read
+     */
+    @Modifying
+    @Transactional
+    @Query("delete from SpendingLedgerEntry e where e.username in " +
+            "(select b.user.username from Booking b where b.seminar.id = ?1)")
+    int deleteBySeminarId(long seminarId);
+}
@@ -1,12 +1,27 @@
 package de.fh.rosenheim.aline.repository;
 
 import de.fh.rosenheim.aline.model.domain.User;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 
+import java.util.List;
+
 @RepositoryRestResource(exported = false)
 public interface UserRepository extends CrudRepository<User, Long> {
 
     User findByUsername(String username);
     Iterable<User> findByDivision(String division);
+
+    /**
+     * Loads the user together with all bookings and their seminars in a single query
+     */
+    @Query("select distinct u from User u left join fetch u.bookings b left join fetch b.seminar where u.username = ?1")
+    User findWithBookingsByUsername(String username);
+
+    /**
+     * Loads all users of the division together with all bookings and their seminars in a single query
+     */
+    @Query("select distinct u from User u left join fetch u.bookings b left join fetch b.seminar where u.division = ?1")
+    List<User> findWithBookingsByDivision(String division);
 }
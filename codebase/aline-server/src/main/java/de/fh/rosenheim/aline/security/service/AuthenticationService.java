@@ -17,7 +17,6 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Service;
 
 @Service
@@ -25,12 +24,12 @@ public class AuthenticationService {
 
     private final UserRepository userRepository;
     private final AuthenticationManager authenticationManager;
-    private final UserDetailsService userDetailsService;
+    private final CachedUserDetailsService userDetailsService;
     private final TokenUtils tokenUtils;
     private final UserService userService;
     private final UserFactory userFactory;
 
-    public AuthenticationService(UserRepository u, TokenUtils t, AuthenticationManager a, UserDetailsService ud, UserService userService, UserFactory userFactory) {
+    public AuthenticationService(UserRepository u, TokenUtils t, AuthenticationManager a, CachedUserDetailsService ud, UserService userService, UserFactory userFactory) {
         this.userRepository = u;
         this.tokenUtils = t;
         this.authenticationManager = a;
@@ -103,6 +102,8 @@ public class AuthenticationService {
                 User user = this.userRepository.findByUsername(username);
                 user.setLastLogout(dateUtil.getCurrentDate());
                 this.userRepository.save(user);
+                // The cached user still has the old logout date and would accept the token
+                this.userDetailsService.evict(username);
             } else throw invalidToken();
         } catch (AuthenticationException e) {
             throw invalidToken();
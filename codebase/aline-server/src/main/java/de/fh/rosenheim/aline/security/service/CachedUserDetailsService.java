@@ -0,0 +1,72 @@
+package de.fh.rosenheim.aline.security.service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.context.annotation.Primary;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the user details loaded by {@link UserDetailsServiceImpl}, so authenticated requests don't have to query
+ * the users table every time.
+ * Everything that changes the security relevant data of a user (like logout or password reset) has to call
+ * {@link #evict(String)}. The hit and miss counts are published on the metrics endpoint.
+ */
+@Service
+@Primary
+public class CachedUserDetailsService implements UserDetailsService, PublicMetrics {
+
+    private static final int MAX_CACHED_USERS = 1000;
+    private static final int CACHED_USER_MINUTES = 5;
+    private static final String METRIC_PREFIX = "security.userdetails.cache.";
+
+    private final UserDetailsServiceImpl userDetailsService;
+    private final Cache<String, UserDetails> users = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_USERS)
+            .expireAfterWrite(CACHED_USER_MINUTES, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
+
+    public CachedUserDetailsService(UserDetailsServiceImpl userDetailsService) {
+        this.userDetailsService = userDetailsService;
+    }
+
+    @Override
+    public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
+        UserDetails userDetails = username != null ? users.getIfPresent(username) : null;
+        if (userDetails == null) {
+            // Unknown users are not cached, the exception is passed on to the caller
+            userDetails = userDetailsService.loadUserByUsername(username);
+            users.put(username, userDetails);
+        }
+        return userDetails;
+    }
+
+    /**
+     * Removes the user from the cache, the next lookup reads the current data from the database
+     */
+    public void evict(String username) {
+        users.invalidate(username);
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        CacheStats stats = users.stats();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", users.size()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", stats.hitCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", stats.missCount()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "eviction", stats.evictionCount()));
+        return metrics;
+    }
+}
@@ -3,10 +3,10 @@ package de.fh.rosenheim.aline.security.service;
 import de.fh.rosenheim.aline.model.domain.Booking;
 import de.fh.rosenheim.aline.model.dtos.user.UserDTO;
 import de.fh.rosenheim.aline.model.security.SecurityUser;
-import de.fh.rosenheim.aline.security.utils.Authorities;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import de.fh.rosenheim.aline.security.utils.Authority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
 /**
@@ -32,6 +32,25 @@ public class SecurityService {
                 (isHeadOfDivision(principal, data.getDivision()) || isSelf(principal, data.getUserName()) || isFrontOffice(principal));
     }
 
+    /**
+     * Same as {@link #canAccessUserData(SecurityUser, UserDTO)}, before the data of the user is loaded.
+     * Without a username the principal accesses its own data. Unknown users can't be accessed.
+     */
+    public boolean canAccessDataOfUser(SecurityUser principal, String username) {
+        if (principal == null) {
+            return false;
+        } else if (username == null || isSelf(principal, username) || isFrontOffice(principal)) {
+            return true;
+        } else if (!isDivisionHead(principal)) {
+            return false;
+        }
+        try {
+            return isHeadOfDivision(principal, getUser(username).getDivision());
+        } catch (UsernameNotFoundException e) {
+            return false;
+        }
+    }
+
     /**
      * Users can book for themselves
      * Front Office can book for everybody
@@ -47,7 +66,13 @@ public class SecurityService {
      * Front Office can change everything
      */
     public boolean canCurrentUserChangeBookingStatus(Booking data) {
-        SecurityUser principal = getCurrentUser();
+        return canChangeBookingStatus(getCurrentUser(), data);
+    }
+
+    /**
+     * Same as {@link #canCurrentUserChangeBookingStatus(Booking)}, for checking many bookings with a single principal
+     */
+    public boolean canChangeBookingStatus(SecurityUser principal, Booking data) {
         return principal != null && data != null &&
                 (isHeadOfDivision(principal, data.getUser().getDivision()) || isFrontOffice(principal));
     }
@@ -84,28 +109,28 @@ public class SecurityService {
      * Checks if the given principal has front office authorities
      */
     public boolean isFrontOffice(SecurityUser principal) {
-        return principal.getAuthorities().contains(new SimpleGrantedAuthority(Authorities.FRONT_OFFICE));
+        return principal.hasAuthority(Authority.FRONT_OFFICE);
     }
 
     /**
      * Checks if the given principal has TOP_DOG authorities
      */
     public boolean isTopDog(String username) {
-        return getUser(username).getAuthorities().contains(new SimpleGrantedAuthority(Authorities.TOP_DOG));
+        return getUser(username).hasAuthority(Authority.TOP_DOG);
     }
 
     /**
      * Checks if the given principal has division head authorities
      */
     private boolean isDivisionHead(SecurityUser principal) {
-        return principal.getAuthorities().contains(new SimpleGrantedAuthority(Authorities.DIVISION_HEAD));
+        return principal.hasAuthority(Authority.DIVISION_HEAD);
     }
 
     /**
      * Is the given principal the division head of the given user
      */
     private boolean isHeadOfDivision(SecurityUser principal, String division) {
-        return principal.getAuthorities().contains(new SimpleGrantedAuthority(Authorities.DIVISION_HEAD)) &&
+        return principal.hasAuthority(Authority.DIVISION_HEAD) &&
                 principal.getDivision().equals(division);
     }
 
@@ -119,7 +144,7 @@ public class SecurityService {
     /**
      * Loads the data of the user in the current securityContext
      */
-    private SecurityUser getCurrentUser() {
+    public SecurityUser getCurrentUser() {
         return getUser(SecurityContextHolder.getContext().getAuthentication().getName());
     }
 
@@ -0,0 +1,39 @@
+package de.fh.rosenheim.aline.security.utils;
+
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+import java.util.EnumSet;
+
+/**
+ * The authorities from {@link Authorities} as enum, used for fast permission checks via {@link EnumSet}
+ */
+public enum Authority {
+    DIVISION_HEAD(Authorities.DIVISION_HEAD),
+    EMPLOYEE(Authorities.EMPLOYEE),
+    FRONT_OFFICE(Authorities.FRONT_OFFICE),
+    TOP_DOG(Authorities.TOP_DOG);
+
+    private final String name;
+
+    Authority(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Converts the granted authorities, unknown authorities are ignored
+     */
+    public static EnumSet<Authority> of(Collection<? extends GrantedAuthority> grantedAuthorities) {
+        EnumSet<Authority> authorities = EnumSet.noneOf(Authority.class);
+        if (grantedAuthorities != null) {
+            for (GrantedAuthority grantedAuthority : grantedAuthorities) {
+                for (Authority authority : values()) {
+                    if (authority.name.equals(grantedAuthority.getAuthority())) {
+                        authorities.add(authority);
+                    }
+                }
+            }
+        }
+        return authorities;
+    }
+}
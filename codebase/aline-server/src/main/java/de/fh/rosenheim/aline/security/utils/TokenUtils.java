@@ -1,5 +1,7 @@
 package de.fh.rosenheim.aline.security.utils;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import de.fh.rosenheim.aline.model.security.SecurityUser;
 import de.fh.rosenheim.aline.util.DateUtil;
 import io.jsonwebtoken.Claims;
@@ -12,16 +14,29 @@ import org.springframework.stereotype.Component;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public class TokenUtils {
 
     private static final String CREATED = "created";
 
+    /**
+     * Verified tokens are cached, so the signature of a token is only checked once and not on every request.
+     * Expiration is checked on every cache hit, the same way parsing the token checks it, logout and password reset
+     * are still checked on every validation.
+     */
+    private static final int MAX_CACHED_TOKENS = 10000;
+    private static final int CACHED_TOKEN_MINUTES = 10;
+
     @Value("${token.secret}")
     private String secret;
 
     private final DateUtil dateUtil;
+    private final Cache<String, Claims> verifiedClaims = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_TOKENS)
+            .expireAfterWrite(CACHED_TOKEN_MINUTES, TimeUnit.MINUTES)
+            .build();
 
     /**
      * Expiration in seconds
@@ -58,7 +73,8 @@ public class TokenUtils {
     public String refreshToken(String token) {
         String refreshedToken;
         try {
-            final Claims claims = this.getClaimsFromToken(token);
+            // Copy the claims, the cached ones must not be changed
+            final Claims claims = Jwts.claims(new HashMap<>(this.getClaimsFromToken(token)));
             claims.put(CREATED, dateUtil.getCurrentDate());
             refreshedToken = this.generateToken(claims);
         } catch (Exception e) {
@@ -77,10 +93,13 @@ public class TokenUtils {
      */
     public Boolean isTokenValid(String token, UserDetails userDetails) {
         SecurityUser user = (SecurityUser) userDetails;
-        final String username = this.getUsernameFromToken(token);
-        final Date created = this.getCreatedDateFromToken(token);
-        return (username.equals(user.getUsername()) &&
-                !this.isTokenExpired(token) &&
+        final Claims claims = this.getClaimsFromToken(token);
+        if (claims == null) {
+            return false;
+        }
+        final Date created = new Date((Long) claims.get(CREATED));
+        return (claims.getSubject().equals(user.getUsername()) &&
+                !claims.getExpiration().before(dateUtil.getCurrentDate()) &&
                 !this.isCreatedBeforeLastPasswordReset(created, user.getLastPasswordReset()) &&
                 !this.isCreatedBeforeLastLogout(created, user.getLastLogout()));
     }
@@ -118,15 +137,29 @@ public class TokenUtils {
         return expiration;
     }
 
+    /**
+     * Returns the claims of the token if its signature is valid and it is not expired, otherwise null
+     */
     private Claims getClaimsFromToken(String token) {
-        Claims claims;
-        try {
-            claims = Jwts.parser()
-                    .setSigningKey(this.secret)
-                    .parseClaimsJws(token)
-                    .getBody();
-        } catch (Exception e) {
-            claims = null;
+        if (token == null) {
+            return null;
+        }
+        Claims claims = verifiedClaims.getIfPresent(token);
+        if (claims != null && claims.getExpiration() != null && claims.getExpiration().before(new Date())) {
+            // The parser rejects expired tokens against the system clock, so do cached ones
+            verifiedClaims.invalidate(token);
+            return null;
+        }
+        if (claims == null) {
+            try {
+                claims = Jwts.parser()
+                        .setSigningKey(this.secret)
+                        .parseClaimsJws(token)
+                        .getBody();
+                verifiedClaims.put(token, claims);
+            } catch (Exception e) {
+                claims = null;
+            }
         }
         return claims;
     }
@@ -135,11 +168,6 @@ public class TokenUtils {
         return new Date(System.currentTimeMillis() + this.expiration * 1000);
     }
 
-    private Boolean isTokenExpired(String token) {
-        final Date expiration = this.getExpirationDateFromToken(token);
-        return expiration.before(dateUtil.getCurrentDate());
-    }
-
     private Boolean isCreatedBeforeLastPasswordReset(Date created, Date lastPasswordReset) {
         return (lastPasswordReset != null && created.before(lastPasswordReset));
     }
@@ -4,68 +4,180 @@ import de.fh.rosenheim.aline.model.domain.Booking;
 import de.fh.rosenheim.aline.model.domain.BookingStatus;
 import de.fh.rosenheim.aline.model.domain.Seminar;
 import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingExportDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingStatusResultDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupCheckDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.PendingBookingDTO;
 import de.fh.rosenheim.aline.model.exceptions.BookingException;
 import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
+import de.fh.rosenheim.aline.model.security.SecurityUser;
 import de.fh.rosenheim.aline.repository.BookingRepository;
 import de.fh.rosenheim.aline.security.service.SecurityService;
-import de.fh.rosenheim.aline.util.SeminarUtil;
+import org.hibernate.exception.ConstraintViolationException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.core.AuthenticationException;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static de.fh.rosenheim.aline.util.LoggingUtil.currentUser;
 
 @Component
 public class BookingService {
 
+    /**
+     * How often a booking is tried before giving up, if it fails because of concurrent bookings
+     */
+    private static final int MAX_BOOKING_ATTEMPTS = 5;
+
+    private static final String NO_PERMISSION = "You don't have permission to edit this booking";
+
+    /**
+     * Base wait time before a booking is retried, grows with every attempt and gets a random jitter
+     */
+    private static final long RETRY_BACKOFF_MILLIS = 20;
+
+    /**
+     * The properties of a pending booking it can be sorted by, with their path in the query of the repository
+     */
+    private static final Map<String, String> PENDING_SORT_PATHS = new LinkedHashMap<>();
+
+    static {
+        PENDING_SORT_PATHS.put("id", "id");
+        PENDING_SORT_PATHS.put("created", "created");
+        PENDING_SORT_PATHS.put("userName", "u.username");
+        PENDING_SORT_PATHS.put("firstName", "u.firstName");
+        PENDING_SORT_PATHS.put("lastName", "u.lastName");
+        PENDING_SORT_PATHS.put("seminarId", "s.id");
+        PENDING_SORT_PATHS.put("seminarName", "s.name");
+        PENDING_SORT_PATHS.put("costsPerParticipant", "s.costsPerParticipant");
+        PENDING_SORT_PATHS.put("firstDate", "s.firstDate");
+    }
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
     private final BookingRepository bookingRepository;
     private final SecurityService securityService;
     private final SeminarService seminarService;
     private final UserService userService;
+    private final SpendingLedgerService spendingLedgerService;
+    private final DivisionRollupService divisionRollupService;
+    private final TransactionTemplate transactionTemplate;
 
-    public BookingService(BookingRepository bookingRepository, SecurityService securityService, SeminarService seminarService, UserService userService) {
+    public BookingService(BookingRepository bookingRepository, SecurityService securityService, SeminarService seminarService, UserService userService, SpendingLedgerService spendingLedgerService, DivisionRollupService divisionRollupService, PlatformTransactionManager transactionManager) {
         this.bookingRepository = bookingRepository;
         this.securityService = securityService;
         this.seminarService = seminarService;
         this.userService = userService;
+        this.spendingLedgerService = spendingLedgerService;
+        this.divisionRollupService = divisionRollupService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     /**
      * Tries to book the seminar to the user.
      * If the user already tried to book the seminar and it was DENIED, the old booking will be set to REQUESTED.
+     * If the seminar is already fully booked, the booking will be WAITLISTED instead and gets a seat as soon as
+     * one is freed by a denied or deleted booking.
      * If the user (to whom the seminar is booked) is a TOP_DOG the booking will instantly be GRANTED.
      * If the current user (not necessarily the same as the one to whom the seminar is booked) is FRONT_OFFICE, the
      * booking will instantly be GRANTED.
      *
+     * <p>
+     * Every attempt runs in its own transaction which holds a lock on the seminar, so concurrent bookings for the
+     * same seminar can not oversell it. Attempts that fail because of a lock conflict are retried a few times.
+     *
      * @throws BookingException If the given seminar ID or username are not valid
      *                          If the seminar is not bookable
-     *                          If the seminar is already fully booked
-     *                          If the seminar is already booked to the user with status "REQUESTED" or "GRANTED"
+     *                          If the seminar is already booked to the user with status "REQUESTED", "GRANTED" or
+     *                          "WAITLISTED"
+     *                          If the seminar could not be locked after several attempts
      */
     public Booking book(Long seminarId, String username) throws BookingException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> reserveSeat(seminarId, username));
+            } catch (RejectedBooking e) {
+                throw e.getCause();
+            } catch (DataIntegrityViolationException e) {
+                if (!isDuplicateBooking(e)) {
+                    throw e;
+                }
+                // The same booking was created concurrently, the unique index rejected the second
+                log.info(currentUser() + "tried to book seminar with id=" + seminarId + " twice for user with username=" + username);
+                throw new BookingException("This booking already exists");
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= MAX_BOOKING_ATTEMPTS) {
+                    log.warn(currentUser() + "gave up booking seminar with id=" + seminarId + " after " + attempt + " attempts", e);
+                    throw new BookingException("The seminar is currently booked by too many users, please try again");
+                }
+                log.info(currentUser() + "retries booking seminar with id=" + seminarId + " after a lock conflict");
+                backOff(attempt);
+            }
+        }
+    }
+
+    /**
+     * Whether the unique constraint on user and seminar was violated, as opposed to any other constraint.
+     * The extracted constraint name carries database specific additions (H2 reports the name of the index), if it
+     * isn't extracted at all the name is still part of the message of the database error.
+     */
+    private static boolean isDuplicateBooking(DataIntegrityViolationException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String name = cause instanceof ConstraintViolationException
+                    ? ((ConstraintViolationException) cause).getConstraintName()
+                    : cause.getMessage();
+            if (name != null && name.toUpperCase(Locale.ROOT).contains(Booking.UNIQUE_USER_SEMINAR)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void backOff(int attempt) throws BookingException {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MILLIS * attempt + ThreadLocalRandom.current().nextLong(RETRY_BACKOFF_MILLIS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BookingException("The booking was interrupted");
+        }
+    }
+
+    /**
+     * A single booking attempt, has to run inside of a transaction.
+     * A {@link BookingException} is wrapped so that the transaction is rolled back.
+     */
+    private Booking reserveSeat(Long seminarId, String username) {
         try {
-            Seminar seminar = seminarService.getSeminar(seminarId);
+            Seminar seminar = seminarService.getSeminarForUpdate(seminarId);
 
             if (!seminar.isBookable()) {
                 throw new BookingException("This seminar is not bookable");
             }
 
-            if (SeminarUtil.getActiveBookingCount(seminar) >= seminar.getMaximumParticipants()) {
-                throw new BookingException("This seminar is already fully booked");
-            }
-
             Booking booking = getValidBookingForUser(seminar, userService.getUserByName(username));
             bookingRepository.save(booking);
             log.info(currentUser() + "booked seminar with id=" + seminarId + " for user with username=" + username);
             return booking;
         } catch (NoObjectForIdException e) {
-            throw new BookingException("The given ID for " + e.getObject().getSimpleName() + " was not valid: " + e.getId());
+            throw new RejectedBooking(new BookingException(
+                    "The given ID for " + e.getObject().getSimpleName() + " was not valid: " + e.getId()));
+        } catch (BookingException e) {
+            throw new RejectedBooking(e);
         }
     }
 
@@ -87,17 +199,117 @@ public class BookingService {
         return bookingRepository.findBySeminarId(seminarId);
     }
 
+    /**
+     * Returns the bookings of the user for the seminars of the given year together with their seminars. As in
+     * {@link de.fh.rosenheim.aline.util.SeminarUtil#getYear(Seminar)}, seminars without dates belong to the current
+     * year.
+     */
+    public List<Booking> getBookingsOfUser(String username, int year) {
+        Calendar calendar = Calendar.getInstance();
+        boolean currentYear = calendar.get(Calendar.YEAR) == year;
+        calendar.clear();
+        calendar.set(year, Calendar.JANUARY, 1);
+        Date from = calendar.getTime();
+        calendar.set(year + 1, Calendar.JANUARY, 1);
+        Date to = calendar.getTime();
+        return currentYear
+                ? bookingRepository.findWithSeminarByUserUsernameAndLastDateBetweenOrUndated(username, from, to)
+                : bookingRepository.findWithSeminarByUserUsernameAndLastDateBetween(username, from, to);
+    }
+
+    /**
+     * Returns a page of the bookings of the division that wait for approval (status REQUESTED)
+     *
+     * @param division the division of the users, the division of the current user if empty
+     * @param pageable sorted by the properties of {@link PendingBookingDTO}
+     * @throws BookingException if the bookings can't be sorted by one of the properties
+     */
+    public Page<PendingBookingDTO> getPendingBookings(String division, Pageable pageable) throws BookingException {
+        String pendingDivision = division != null && division.length() > 0
+                ? division
+                : securityService.getCurrentUser().getDivision();
+        return bookingRepository.findByStatusAndUserDivision(
+                BookingStatus.REQUESTED, pendingDivision, toPendingSortPaths(pageable));
+    }
+
+    /**
+     * Replaces the sort properties, which are named like the properties of {@link PendingBookingDTO}, by their path
+     * in the query. Otherwise they are resolved against the booking, which fails for all properties of user and
+     * seminar.
+     */
+    private static Pageable toPendingSortPaths(Pageable pageable) throws BookingException {
+        if (pageable.getSort() == null) {
+            return pageable;
+        }
+        List<Sort.Order> orders = new ArrayList<>();
+        for (Sort.Order order : pageable.getSort()) {
+            String path = PENDING_SORT_PATHS.get(order.getProperty());
+            if (path == null) {
+                throw new BookingException("Pending bookings can't be sorted by " + order.getProperty()
+                        + ". Allowed values are: " + PENDING_SORT_PATHS.keySet());
+            }
+            Sort.Order pathOrder = new Sort.Order(order.getDirection(), path, order.getNullHandling());
+            orders.add(order.isIgnoreCase() ? pathOrder.ignoreCase() : pathOrder);
+        }
+        return new PageRequest(pageable.getPageNumber(), pageable.getPageSize(), new Sort(orders));
+    }
+
+    /**
+     * Returns the spendings and booking counts of the division per year and category
+     *
+     * @param division the division, the division of the current user if empty
+     * @param year     only this year, all years if null
+     */
+    public List<DivisionRollupDTO> getDivisionRollup(String division, Integer year) {
+        return divisionRollupService.getRollup(division, year);
+    }
+
+    /**
+     * Rebuilds the spendings and booking counts of all divisions from the bookings, to correct them if they differ
+     */
+    public DivisionRollupCheckDTO rebuildDivisionRollup() {
+        return divisionRollupService.rebuildAll();
+    }
+
+    /**
+     * Passes all bookings as flat export rows to the consumer, while they are read from the database.
+     * Neither the bookings nor their seminars and users are loaded as entities, so memory usage doesn't grow with
+     * the number of bookings.
+     *
+     * @return the number of exported bookings
+     */
+    @Transactional(readOnly = true)
+    public long exportBookings(Consumer<BookingExportDTO> consumer) {
+        long count = 0;
+        try (Stream<BookingExportDTO> bookings = bookingRepository.streamAllForExport()) {
+            Iterator<BookingExportDTO> iterator = bookings.iterator();
+            while (iterator.hasNext()) {
+                consumer.accept(iterator.next());
+                count++;
+            }
+        }
+        log.info(currentUser() + "exported " + count + " bookings successfully");
+        return count;
+    }
+
     /**
      * Set the status of the booking to granted
      *
      * @param id of the booking
      * @return the updated booking
      * @throws AuthenticationException if the user is not allowed to grant the booking
+     * @throws BookingException        if the booking is waitlisted or it is denied and the seminar is fully booked
      */
-    public Booking grantBooking(long id) throws NoObjectForIdException, AuthenticationException {
+    @Transactional
+    public Booking grantBooking(long id) throws NoObjectForIdException, AuthenticationException, BookingException {
+        lockSeminarOfBooking(id);
         Booking booking = this.getBooking(id);
         if (securityService.canCurrentUserChangeBookingStatus(booking)) {
-            booking.setStatus(BookingStatus.GRANTED);
+            String rejection = getGrantRejection(booking);
+            if (rejection != null) {
+                throw new BookingException(rejection);
+            }
+            changeStatus(booking, BookingStatus.GRANTED);
             log.info(currentUser() + "granted booking with id=" + id + " successfully");
             return bookingRepository.save(booking);
         } else throw deny();
@@ -110,25 +322,100 @@ public class BookingService {
      * @return the updated booking
      * @throws AuthenticationException if the user is not allowed to deny the booking
      */
+    @Transactional
     public Booking denyBooking(long id) throws NoObjectForIdException, AuthenticationException {
+        lockSeminarOfBooking(id);
         Booking booking = this.getBooking(id);
         if (securityService.canCurrentUserChangeBookingStatus(booking)) {
-            booking.setStatus(BookingStatus.DENIED);
+            changeStatus(booking, BookingStatus.DENIED);
             log.info(currentUser() + "denied booking with id=" + id + " successfully");
-            return bookingRepository.save(booking);
+            bookingRepository.save(booking);
+            promoteWaitlistedBookings(booking.getSeminar());
+            return booking;
         } else throw deny();
     }
 
+    /**
+     * Sets the status of all given bookings to GRANTED or DENIED in a single transaction.
+     * The seminars of the bookings are locked and the bookings are loaded with a single query each, the current
+     * user is only loaded once. Bookings that don't exist, that the current user is not allowed to change or that
+     * can't be granted (the same checks as {@link #grantBooking(long)}) are skipped, the reason is part of the result.
+     *
+     * @return one result per distinct ID, in the order of the IDs
+     * @throws BookingException if the status is neither GRANTED nor DENIED
+     */
+    @Transactional
+    public List<BookingStatusResultDTO> changeBookingStatus(List<Long> ids, BookingStatus status)
+            throws BookingException {
+        if (status != BookingStatus.GRANTED && status != BookingStatus.DENIED) {
+            throw new BookingException("Bookings can only be granted or denied");
+        }
+        Set<Long> distinctIds = new LinkedHashSet<>(ids);
+        List<BookingStatusResultDTO> results = new ArrayList<>(distinctIds.size());
+        if (distinctIds.isEmpty()) {
+            return results;
+        }
+        Set<Long> validIds = new LinkedHashSet<>(distinctIds);
+        validIds.remove(null);
+        Map<Long, Booking> bookings = new HashMap<>();
+        if (!validIds.isEmpty()) {
+            seminarService.getSeminarsForUpdate(bookingRepository.findSeminarIdsByIdIn(validIds));
+            for (Booking booking : bookingRepository.findAll(validIds)) {
+                bookings.put(booking.getId(), booking);
+            }
+        }
+
+        SecurityUser principal = securityService.getCurrentUser();
+        List<Booking> changed = new ArrayList<>();
+        Map<Long, Seminar> seminarsWithFreedSeats = new LinkedHashMap<>();
+        for (Long id : distinctIds) {
+            Booking booking = bookings.get(id);
+            if (id == null) {
+                results.add(new BookingStatusResultDTO(null, null, "The id of a booking must not be null"));
+            } else if (booking == null) {
+                results.add(new BookingStatusResultDTO(id, null, "There is no booking with this id"));
+            } else if (!securityService.canChangeBookingStatus(principal, booking)) {
+                results.add(new BookingStatusResultDTO(id, null, NO_PERMISSION));
+            } else {
+                // Seats taken by the bookings granted earlier in this loop are already counted
+                String rejection = status == BookingStatus.GRANTED ? getGrantRejection(booking) : null;
+                if (rejection != null) {
+                    results.add(new BookingStatusResultDTO(id, booking.getStatus(), rejection));
+                } else {
+                    changeStatus(booking, status);
+                    changed.add(booking);
+                    if (status == BookingStatus.DENIED) {
+                        seminarsWithFreedSeats.put(booking.getSeminar().getId(), booking.getSeminar());
+                    }
+                    results.add(new BookingStatusResultDTO(id, status, null));
+                }
+            }
+        }
+        // The updates are sent as JDBC batches when the transaction is flushed
+        bookingRepository.save(changed);
+        seminarsWithFreedSeats.values().forEach(this::promoteWaitlistedBookings);
+        log.info(currentUser() + "set " + changed.size() + " of " + distinctIds.size() + " bookings to " + status);
+        return results;
+    }
+
     /**
      * Delete the booking
      *
      * @param id of the booking
      */
+    @Transactional
     public void deleteBooking(long id) throws NoObjectForIdException {
-        if (securityService.canCurrentUserDeleteBooking(getBooking(id))) {
+        lockSeminarOfBooking(id);
+        Booking booking = getBooking(id);
+        if (securityService.canCurrentUserDeleteBooking(booking)) {
             try {
+                // Frees the seat of the booking
+                updateActiveBookingCount(booking.getSeminar(), booking.getStatus().isActive(), false);
+                spendingLedgerService.bookingChanged(booking, booking.getStatus(), null);
+                divisionRollupService.bookingChanged(booking, booking.getStatus(), null);
                 bookingRepository.delete(id);
                 log.info(currentUser() + "deleted booking with id=" + id + " successfully");
+                promoteWaitlistedBookings(booking.getSeminar());
             } catch (Exception e) {
                 log.error(currentUser() + "tried to deleted booking with id=" + id + " but it failed.", e);
                 throw e;
@@ -139,41 +426,128 @@ public class BookingService {
     /**
      * Checks if the user has already booked the seminar.
      * If there is no booking it will create a new booking.
-     * If there already is a DENIED booking, it will return the old booking but with status REQUESTED.
-     * If there already is a REQUESTED or GRANTED booking it will throw an exception
+     * If there already is a DENIED booking, it will return the old booking but with a new status.
+     * If there already is a REQUESTED, GRANTED or WAITLISTED booking it will throw an exception
      *
      * @return The booking with the appropriate status
      * @throws BookingException if there already exists a non-denied booking for this seminar/user combination
      */
     private Booking getValidBookingForUser(Seminar seminar, User user) throws BookingException {
-        Booking booking;
-        Optional<Booking> oldBooking = user.getBookings().stream()
-                .filter(b -> b.getSeminar().equals(seminar)).findAny();
+        Booking booking = bookingRepository.findByUserUsernameAndSeminarId(user.getUsername(), seminar.getId());
 
-        if (oldBooking.isPresent()) {
-            booking = oldBooking.get();
+        if (booking != null) {
             // Reopen a denied booking
             if (booking.getStatus().equals(BookingStatus.DENIED)) {
-                booking.setStatus(BookingStatus.REQUESTED);
                 log.info(currentUser() + "reopened the request user with username=" + user.getUsername() + "to book seminar with id=" + seminar.getId());
             } else throw new BookingException(
                     "This booking already exists. Id=" + booking.getId() + " status=" + booking.getStatus().toString());
         } else {
             booking = new Booking();
-            booking.setStatus(BookingStatus.REQUESTED);
             booking.setSeminar(seminar);
             booking.setUser(user);
         }
 
-        // If the booking is for a TOP_DOG or made by the front office automatically grant the booking
-        if (securityService.isTopDog(user.getUsername()) || securityService.isCurrentUserFrontOffice()) {
-            booking.setStatus(BookingStatus.GRANTED);
+        if (!hasFreeSeat(seminar)) {
+            changeStatus(booking, BookingStatus.WAITLISTED);
+            log.info(currentUser() + "put user with username=" + user.getUsername() + " on the waitlist of seminar with id=" + seminar.getId());
+        } else if (securityService.isTopDog(user.getUsername()) || securityService.isCurrentUserFrontOffice()) {
+            // If the booking is for a TOP_DOG or made by the front office automatically grant the booking
+            changeStatus(booking, BookingStatus.GRANTED);
+        } else {
+            changeStatus(booking, BookingStatus.REQUESTED);
         }
 
         return booking;
     }
 
+    /**
+     * Moves the oldest waitlisted bookings of the seminar to REQUESTED (or GRANTED for a TOP_DOG) as long as there
+     * are free seats. The seminar has to be locked by the current transaction.
+     */
+    private void promoteWaitlistedBookings(Seminar seminar) {
+        while (hasFreeSeat(seminar)) {
+            Booking next = bookingRepository.findFirstBySeminarIdAndStatusOrderByUpdatedAscIdAsc(
+                    seminar.getId(), BookingStatus.WAITLISTED);
+            if (next == null) {
+                return;
+            }
+            String username = next.getUser().getUsername();
+            changeStatus(next, securityService.isTopDog(username) ? BookingStatus.GRANTED : BookingStatus.REQUESTED);
+            bookingRepository.save(next);
+            log.info("Promoted booking with id=" + next.getId() + " of user with username=" + username + " from the waitlist to " + next.getStatus());
+        }
+    }
+
+    /**
+     * Checks if the booking can be granted, the same way {@link #getValidBookingForUser(Seminar, User)} does for a
+     * new booking. Waitlisted bookings only get a seat in the order of the waitlist and denied bookings only if the
+     * seminar has a free seat. The seminar has to be locked by the current transaction.
+     *
+     * @return the reason why the booking can't be granted, null if it can
+     */
+    private String getGrantRejection(Booking booking) {
+        if (booking.getStatus() == BookingStatus.WAITLISTED) {
+            return "This booking is waitlisted, it gets a seat as soon as one is free";
+        } else if (!booking.getStatus().isActive() && !hasFreeSeat(booking.getSeminar())) {
+            return "This seminar is fully booked";
+        }
+        return null;
+    }
+
+    private boolean hasFreeSeat(Seminar seminar) {
+        return seminar.getActiveBookingCount() < seminar.getMaximumParticipants();
+    }
+
+    /**
+     * Sets the status of the booking and updates the active booking count of the seminar, the spending ledger of the
+     * user and the division rollup accordingly. All status changes have to go through here, otherwise the count of
+     * the seminar is off.
+     */
+    private void changeStatus(Booking booking, BookingStatus status) {
+        BookingStatus oldStatus = booking.getStatus();
+        boolean wasActive = oldStatus != null && oldStatus.isActive();
+        updateActiveBookingCount(booking.getSeminar(), wasActive, status.isActive());
+        spendingLedgerService.bookingChanged(booking, oldStatus, status);
+        divisionRollupService.bookingChanged(booking, oldStatus, status);
+        booking.setStatus(status);
+    }
+
+    /**
+     * Locks the seminar of the booking before the booking is loaded, so the seminar is read with its current
+     * active booking count and no concurrent booking can change it until the transaction ends.
+     */
+    private void lockSeminarOfBooking(long bookingId) throws NoObjectForIdException {
+        Long seminarId = bookingRepository.findSeminarIdById(bookingId);
+        if (seminarId != null) {
+            seminarService.getSeminarForUpdate(seminarId);
+        }
+    }
+
+    private void updateActiveBookingCount(Seminar seminar, boolean wasActive, boolean isActive) {
+        if (seminar != null && wasActive != isActive) {
+            seminar.setActiveBookingCount(seminar.getActiveBookingCount() + (isActive ? 1 : -1));
+            seminarService.seminarChanged(seminar);
+        }
+    }
+
     private AccessDeniedException deny() {
-        return new AccessDeniedException("You don't have permission to edit this booking");
+        return new AccessDeniedException(NO_PERMISSION);
+    }
+
+    /**
+     * Carries a {@link BookingException} out of a booking transaction
+     */
+    private static class RejectedBooking extends RuntimeException {
+
+        private static final long serialVersionUID = 4526713209834185772L;
+
+        RejectedBooking(BookingException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized BookingException getCause() {
+            return (BookingException) super.getCause();
+        }
     }
 }
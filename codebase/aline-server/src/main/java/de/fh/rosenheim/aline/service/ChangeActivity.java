@@ -0,0 +1,31 @@
+package de.fh.rosenheim.aline.service;
+
+/**
+ * Counts the pending changes of precomputed data (like the rollup of a division) and all changes that ever became
+ * pending, so a rebuild can tell whether the data was changed while it was rebuilt
+ */
+class ChangeActivity {
+
+    private int pending;
+    private long changes;
+
+    synchronized void begin() {
+        pending++;
+        changes++;
+    }
+
+    synchronized void end() {
+        pending--;
+    }
+
+    /**
+     * Returns the number of changes so far, or -1 if a change is pending
+     */
+    synchronized long mark() {
+        return pending > 0 ? -1 : changes;
+    }
+
+    synchronized boolean isUnchangedSince(long mark) {
+        return pending == 0 && changes == mark;
+    }
+}
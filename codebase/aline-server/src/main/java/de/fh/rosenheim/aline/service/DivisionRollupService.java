@@ -0,0 +1,389 @@
+package de.fh.rosenheim.aline.service;
+
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.DivisionRollupEntry;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingFactory;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupCheckDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupDTO;
+import de.fh.rosenheim.aline.repository.BookingRepository;
+import de.fh.rosenheim.aline.repository.DivisionRollupRepository;
+import de.fh.rosenheim.aline.security.service.SecurityService;
+import de.fh.rosenheim.aline.util.DateUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static de.fh.rosenheim.aline.util.LoggingUtil.currentUser;
+
+/**
+ * Maintains the division rollup, the spendings and booking counts of every division per year and category
+ * (see {@link DivisionRollupEntry}). Status changes of bookings are collected per transaction and applied to the
+ * entries in a new transaction once the booking is committed, so bookings don't hold the lock of their seminar while
+ * waiting for the rollup. The entries are locked ordered by division, year and category, so concurrent updates
+ * always lock them in the same order. Divisions without stored entries are skipped, so bookings of divisions whose
+ * rollup is never read don't touch the entries at all. Changes to the costs, dates or category of a seminar remove
+ * the entries of all divisions with participants. Missing and expired entries are rebuilt from the bookings with the
+ * next read.
+ */
+@Service
+public class DivisionRollupService {
+
+    /**
+     * Only requested and granted bookings are part of the rollup
+     */
+    private static final List<BookingStatus> ROLLUP_STATUSES =
+            Collections.unmodifiableList(Arrays.asList(BookingStatus.REQUESTED, BookingStatus.GRANTED));
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final DivisionRollupRepository divisionRollupRepository;
+    private final BookingRepository bookingRepository;
+    private final BookingFactory bookingFactory;
+    private final SecurityService securityService;
+    private final DateUtil dateUtil;
+    private final TransactionTemplate newTransactionTemplate;
+
+    /**
+     * The divisions with changes of bookings that are committed (or about to be) but not applied to the rollup yet
+     */
+    private final ConcurrentMap<String, ChangeActivity> activities = new ConcurrentHashMap<>();
+
+    public DivisionRollupService(DivisionRollupRepository divisionRollupRepository,
+                                 BookingRepository bookingRepository, BookingFactory bookingFactory,
+                                 SecurityService securityService, DateUtil dateUtil,
+                                 PlatformTransactionManager transactionManager) {
+        this.divisionRollupRepository = divisionRollupRepository;
+        this.bookingRepository = bookingRepository;
+        this.bookingFactory = bookingFactory;
+        this.securityService = securityService;
+        this.dateUtil = dateUtil;
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns the rollup of the division, sorted by year (current year first) and category.
+     * If any entry of the division is missing or expired, the rollup of the division is rebuilt first.
+     *
+     * @param division the division, the division of the current user if empty
+     * @param year     only the entries of this year, all years if null
+     */
+    public List<DivisionRollupDTO> getRollup(String division, Integer year) {
+        String rollupDivision = division != null && division.length() > 0
+                ? division
+                : securityService.getCurrentUser().getDivision();
+        List<DivisionRollupEntry> entries = divisionRollupRepository.findByDivision(rollupDivision);
+        if (entries.isEmpty() || isExpired(entries, dateUtil.getCurrentDate())) {
+            entries = rebuild(rollupDivision);
+        }
+
+        List<DivisionRollupDTO> rollup = new ArrayList<>();
+        for (DivisionRollupEntry entry : entries) {
+            if (!entry.isEmpty() && (year == null || entry.getYear() == year)) {
+                rollup.add(toDivisionRollupDTO(entry));
+            }
+        }
+        rollup.sort(Comparator.comparingInt(DivisionRollupDTO::getYear).reversed()
+                .thenComparing(DivisionRollupDTO::getCategory));
+        return rollup;
+    }
+
+    /**
+     * Rebuilds the rollup of all divisions from the bookings. Divisions with booking changes that are not applied
+     * yet are only removed and not checked, they are rebuilt with the next read.
+     *
+     * @return the number of entries and how many of them were wrong before (expired entries are not counted)
+     */
+    @Transactional
+    public DivisionRollupCheckDTO rebuildAll() {
+        Map<DivisionRollupEntry.Key, DivisionRollupEntry> previous = new HashMap<>();
+        for (DivisionRollupEntry entry : divisionRollupRepository.findAll()) {
+            previous.put(entry.getKey(), entry);
+        }
+        Map<String, Long> marks = new HashMap<>();
+        activities.forEach((division, activity) -> marks.put(division, activity.mark()));
+        // Deleted first, so changes of bookings that are not committed yet are waited for
+        divisionRollupRepository.deleteAllEntries();
+        List<DivisionRollupEntry> entries = bookingFactory.toDivisionRollup(
+                bookingRepository.countForDivisionRollup(ROLLUP_STATUSES));
+        // Decided once per division, so a division is either stored completely or not at all
+        Map<String, Boolean> unchangedDivisions = new HashMap<>();
+        previous.keySet().forEach(key -> unchangedDivisions.put(key.getDivision(), null));
+        entries.forEach(entry -> unchangedDivisions.put(entry.getDivision(), null));
+        unchangedDivisions.replaceAll((division, unchangedDivision) ->
+                isUnchangedSince(division, marks.getOrDefault(division, 0L)));
+        List<DivisionRollupEntry> unchanged = new ArrayList<>();
+        for (DivisionRollupEntry entry : entries) {
+            if (unchangedDivisions.get(entry.getDivision())) {
+                unchanged.add(entry);
+            }
+        }
+        divisionRollupRepository.save(unchanged);
+        Map<String, Long> storedMarks = new HashMap<>();
+        unchanged.forEach(entry -> storedMarks.put(entry.getDivision(), marks.getOrDefault(entry.getDivision(), 0L)));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    removeChangedSince(storedMarks);
+                }
+            });
+        }
+
+        // Divisions without rollup weren't built yet, their entries aren't counted as corrected
+        Set<String> builtDivisions = new HashSet<>();
+        previous.keySet().forEach(key -> builtDivisions.add(key.getDivision()));
+        Date currentDate = dateUtil.getCurrentDate();
+        int corrected = 0;
+        for (DivisionRollupEntry entry : unchanged) {
+            DivisionRollupEntry old = previous.remove(entry.getKey());
+            if (old == null
+                    ? !entry.isEmpty() && builtDivisions.contains(entry.getDivision())
+                    : !old.isExpired(currentDate) && !old.hasSameSums(entry)) {
+                corrected++;
+            }
+        }
+        for (DivisionRollupEntry old : previous.values()) {
+            if (!old.isEmpty() && unchangedDivisions.get(old.getDivision())) {
+                corrected++;
+            }
+        }
+        if (corrected > 0) {
+            log.warn(currentUser() + "rebuilt the division rollup and corrected " + corrected + " of " + entries.size() + " entries");
+        } else {
+            log.info(currentUser() + "rebuilt the division rollup, all " + entries.size() + " entries were correct");
+        }
+        return new DivisionRollupCheckDTO(entries.size(), corrected);
+    }
+
+    /**
+     * Moves the booking from the old to the new status in the rollup of the division of its user. Inside of a
+     * transaction the change is applied after the commit, together with all other changes of the transaction.
+     *
+     * @param oldStatus null for new bookings
+     * @param newStatus null for deleted bookings
+     */
+    public void bookingChanged(Booking booking, BookingStatus oldStatus, BookingStatus newStatus) {
+        String division = booking.getUser().getDivision();
+        if (division == null || oldStatus == newStatus) {
+            return;
+        }
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        Map<DivisionRollupEntry.Key, DivisionRollupEntry> changes = transactional ? getPendingChanges() : new HashMap<>();
+        bookingFactory.addToDivisionRollup(changes, division, booking.getSeminar(), oldStatus, -1);
+        bookingFactory.addToDivisionRollup(changes, division, booking.getSeminar(), newStatus, 1);
+        if (!transactional) {
+            ChangeActivity activity = getActivity(division);
+            activity.begin();
+            try {
+                applyInNewTransaction(changes);
+            } finally {
+                activity.end();
+            }
+        }
+    }
+
+    /**
+     * Removes the rollup of all divisions with participants of the seminar, has to be called after the costs, dates
+     * or category of the seminar were changed and before the seminar is deleted
+     */
+    public void seminarChanged(long seminarId) {
+        int removed = divisionRollupRepository.deleteBySeminarId(seminarId);
+        log.debug("Removed " + removed + " division rollup entries of the participants of seminar with id=" + seminarId);
+    }
+
+    /**
+     * Returns the changes of the current transaction, which are applied after the commit.
+     * Their divisions are marked as changed right before the commit until the changes are applied, so a concurrent
+     * rebuild doesn't store a rollup that might already contain them.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<DivisionRollupEntry.Key, DivisionRollupEntry> getPendingChanges() {
+        Map<DivisionRollupEntry.Key, DivisionRollupEntry> changes =
+                (Map<DivisionRollupEntry.Key, DivisionRollupEntry>) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            Map<DivisionRollupEntry.Key, DivisionRollupEntry> pending = new HashMap<>();
+            List<ChangeActivity> begun = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    for (String division : getDivisions(pending)) {
+                        ChangeActivity activity = getActivity(division);
+                        activity.begin();
+                        begun.add(activity);
+                    }
+                }
+
+                @Override
+                public void afterCommit() {
+                    applyInNewTransaction(pending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(DivisionRollupService.this);
+                    begun.forEach(ChangeActivity::end);
+                }
+            });
+            changes = pending;
+        }
+        return changes;
+    }
+
+    /**
+     * Applies the changes in a new transaction. The booking is already committed at this point, so a failure must
+     * not reach the caller: the rollup of the affected divisions is removed instead, it is rebuilt with the next read.
+     * Changes of divisions without stored entries are dropped first, without locking anything. A rollup that is
+     * rebuilt concurrently is removed again by the rebuild, because the division was marked as changed.
+     */
+    private void applyInNewTransaction(Map<DivisionRollupEntry.Key, DivisionRollupEntry> changes) {
+        for (String division : getDivisions(changes)) {
+            if (divisionRollupRepository.countByDivision(division) == 0) {
+                changes.keySet().removeIf(key -> key.getDivision().equals(division));
+            }
+        }
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            newTransactionTemplate.execute(status -> {
+                apply(changes);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            Set<String> divisions = getDivisions(changes);
+            log.warn("Could not update the division rollup of divisions=" + divisions + ", it is removed", e);
+            try {
+                newTransactionTemplate.execute(status -> {
+                    divisions.forEach(divisionRollupRepository::deleteByDivision);
+                    return null;
+                });
+            } catch (RuntimeException removeException) {
+                log.error("Could not remove the division rollup of divisions=" + divisions + ", it has to be rebuilt", removeException);
+            }
+        }
+    }
+
+    /**
+     * Adds the changes to the entries in the order of their keys. If an entry is missing or expired, the rollup of
+     * its division is removed, it is rebuilt with the next read.
+     */
+    private void apply(Map<DivisionRollupEntry.Key, DivisionRollupEntry> changes) {
+        Date currentDate = dateUtil.getCurrentDate();
+        Set<String> removedDivisions = new HashSet<>();
+        for (DivisionRollupEntry change : new TreeMap<>(changes).values()) {
+            // Changes that cancel each other out (or only concern bookings outside of the rollup) are skipped
+            if (removedDivisions.contains(change.getDivision()) || change.isEmpty()) {
+                continue;
+            }
+            DivisionRollupEntry entry = divisionRollupRepository.findOneForUpdate(
+                    change.getDivision(), change.getYear(), change.getCategory());
+            if (entry == null || entry.isExpired(currentDate)) {
+                divisionRollupRepository.deleteByDivision(change.getDivision());
+                removedDivisions.add(change.getDivision());
+                log.debug("Removed the division rollup of division=" + change.getDivision());
+            } else {
+                entry.add(change);
+                divisionRollupRepository.save(entry);
+            }
+        }
+        changes.clear();
+    }
+
+    /**
+     * Rebuilds the rollup of the division from the bookings. It is only stored if no booking of the division was
+     * changed in the meantime, otherwise it is returned for this read only.
+     */
+    private List<DivisionRollupEntry> rebuild(String division) {
+        long mark = getActivity(division).mark();
+        Map<String, Long> storedMarks = new HashMap<>();
+        List<DivisionRollupEntry> rebuilt = newTransactionTemplate.execute(status -> {
+            // Deleted first, so changes of bookings that are not committed yet are waited for
+            divisionRollupRepository.deleteByDivision(division);
+            List<DivisionRollupEntry> entries = bookingFactory.toDivisionRollup(
+                    bookingRepository.countForDivisionRollup(division, ROLLUP_STATUSES));
+            if (isUnchangedSince(division, mark)) {
+                divisionRollupRepository.save(entries);
+                storedMarks.put(division, mark);
+                log.debug("Rebuilt the division rollup of division=" + division);
+            } else {
+                log.debug("Rebuilt the division rollup of division=" + division + " without storing it, bookings of the division were changed concurrently");
+            }
+            return entries;
+        });
+        removeChangedSince(storedMarks);
+        return rebuilt;
+    }
+
+    /**
+     * Removes the stored rollup of the divisions with booking changes since their mark was taken. The changes are
+     * dropped if the division has no entries yet, so a rollup that was stored while they were applied may miss them.
+     */
+    private void removeChangedSince(Map<String, Long> marks) {
+        Set<String> changed = new TreeSet<>();
+        marks.forEach((division, mark) -> {
+            if (!isUnchangedSince(division, mark)) {
+                changed.add(division);
+            }
+        });
+        if (!changed.isEmpty()) {
+            newTransactionTemplate.execute(status -> {
+                changed.forEach(divisionRollupRepository::deleteByDivision);
+                return null;
+            });
+            log.debug("Removed the division rollup of divisions=" + changed + ", their bookings were changed while it was rebuilt");
+        }
+    }
+
+    private ChangeActivity getActivity(String division) {
+        return activities.computeIfAbsent(division, key -> new ChangeActivity());
+    }
+
+    /**
+     * Whether no booking of the division was changed since the mark was taken and no change is pending
+     */
+    private boolean isUnchangedSince(String division, long mark) {
+        ChangeActivity activity = activities.get(division);
+        return activity == null ? mark == 0 : activity.isUnchangedSince(mark);
+    }
+
+    private static Set<String> getDivisions(Map<DivisionRollupEntry.Key, DivisionRollupEntry> changes) {
+        Set<String> divisions = new TreeSet<>();
+        changes.keySet().forEach(key -> divisions.add(key.getDivision()));
+        return divisions;
+    }
+
+    private static DivisionRollupDTO toDivisionRollupDTO(DivisionRollupEntry entry) {
+        return DivisionRollupDTO.builder()
+                .division(entry.getDivision())
+                .year(entry.getYear())
+                .category(entry.getCategory())
+                .requestedBookingCount(entry.getRequestedBookingCount())
+                .requestedSpending(entry.getRequestedSpending())
+                .grantedBookingCount(entry.getGrantedBookingCount())
+                .grantedSpending(entry.getGrantedSpending())
+                .issuedSpending(entry.getIssuedSpending())
+                .build();
+    }
+
+    private static boolean isExpired(List<DivisionRollupEntry> entries, Date currentDate) {
+        for (DivisionRollupEntry entry : entries) {
+            if (entry.isExpired(currentDate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,271 @@
+package de.fh.rosenheim.aline.service;
+
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarDTO;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFactory;
+import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
+import de.fh.rosenheim.aline.repository.SeminarRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.actuate.endpoint.PublicMetrics;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Keeps the DTOs of all seminars in memory, as the seminar lists are read far more often than seminars change.
+ * All seminars are loaded with the first read, afterwards only the seminars reported via {@link #invalidate(long)}
+ * are reloaded (with the next read). The {@link SeminarSearchIndex} is kept up to date the same way.
+ * Invalidations inside of a transaction take effect after the commit, so the catalog never holds data that is
+ * rolled back.
+ * Every refresh creates a new {@link Snapshot} with a new version, so the lists and the version used as their ETag
+ * always belong together. The cached DTOs are shared between all callers and must not be changed. Hits, misses and
+ * refresh times are published on the metrics endpoint.
+ */
+@Service
+public class SeminarCatalog implements PublicMetrics {
+
+    private static final String METRIC_PREFIX = "seminar.catalog.cache.";
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final SeminarRepository seminarRepository;
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Distinguishes the versions of this catalog from those of a catalog before a restart
+     */
+    private final long instance = System.currentTimeMillis();
+    private long version;
+
+    /**
+     * All cached seminars, null until the first read. Never changed, only replaced as a whole
+     */
+    private volatile Snapshot snapshot;
+    private final SeminarSearchIndex searchIndex = new SeminarSearchIndex();
+    /**
+     * IDs of the seminars that have to be reloaded before the next read, guarded by this
+     */
+    private final Set<Long> staleIds = new HashSet<>();
+    private volatile boolean stale;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong refreshes = new AtomicLong();
+    private volatile long lastRefreshMillis;
+
+    public SeminarCatalog(SeminarRepository seminarRepository, PlatformTransactionManager transactionManager) {
+        this.seminarRepository = seminarRepository;
+        // The long texts of the seminars are loaded lazily, so the conversion needs an open session
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+    }
+
+    /**
+     * Returns the current seminars. All lists and the version should be read from the same snapshot.
+     */
+    public Snapshot snapshot() {
+        return current();
+    }
+
+    /**
+     * Returns the seminar with the given ID
+     */
+    public SeminarDTO getSeminar(long id) throws NoObjectForIdException {
+        CachedSeminar seminar = current().seminars.get(id);
+        if (seminar == null) {
+            throw new NoObjectForIdException(Seminar.class, id);
+        }
+        return seminar.dto;
+    }
+
+    /**
+     * Returns a page of the seminars matching all words of the query, the best matches first
+     */
+    public Page<SeminarDTO> search(String query, Pageable pageable) {
+        SortedMap<Long, CachedSeminar> seminars = current().seminars;
+        List<SeminarDTO> matches = new ArrayList<>();
+        for (Long id : searchIndex.search(query)) {
+            CachedSeminar seminar = seminars.get(id);
+            // Might have been deleted since the search
+            if (seminar != null) {
+                matches.add(seminar.dto);
+            }
+        }
+        int from = Math.min(pageable.getOffset(), matches.size());
+        int to = Math.min(from + pageable.getPageSize(), matches.size());
+        return new PageImpl<>(new ArrayList<>(matches.subList(from, to)), pageable, matches.size());
+    }
+
+    /**
+     * Marks the seminar as changed (or deleted), it is reloaded with the next read.
+     * Inside of a transaction this takes effect only once the transaction is committed.
+     */
+    public void invalidate(long id) {
+        invalidate(Collections.singleton(id));
+    }
+
+    /**
+     * Marks the seminars as changed (or deleted), see {@link #invalidate(long)}
+     */
+    public void invalidate(Collection<Long> ids) {
+        Set<Long> changedIds = new HashSet<>(ids);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void afterCommit() {
+                    markStale(changedIds);
+                }
+            });
+        } else {
+            markStale(changedIds);
+        }
+    }
+
+    @Override
+    public Collection<Metric<?>> metrics() {
+        Snapshot current = snapshot;
+        long hitCount = hits.get();
+        long requestCount = hitCount + misses.get();
+        List<Metric<?>> metrics = new ArrayList<>();
+        metrics.add(new Metric<>(METRIC_PREFIX + "size", current != null ? current.seminars.size() : 0));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit", hitCount));
+        metrics.add(new Metric<>(METRIC_PREFIX + "miss", misses.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "hit.ratio", requestCount > 0 ? (double) hitCount / requestCount : 0));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh", refreshes.get()));
+        metrics.add(new Metric<>(METRIC_PREFIX + "refresh.time", lastRefreshMillis));
+        return metrics;
+    }
+
+    /**
+     * Returns the current seminars, the database is only queried if there are stale seminars (or none at all)
+     */
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current != null && !stale) {
+            hits.incrementAndGet();
+            return current;
+        }
+        misses.incrementAndGet();
+        return refresh();
+    }
+
+    private synchronized Snapshot refresh() {
+        if (snapshot != null && !stale) {
+            // Already refreshed by a concurrent read
+            return snapshot;
+        }
+        long start = System.nanoTime();
+        SortedMap<Long, CachedSeminar> refreshed = transactionTemplate.execute(status -> {
+            if (snapshot == null) {
+                return load(seminarRepository.findAll(), new TreeMap<>());
+            }
+            SortedMap<Long, CachedSeminar> copy = new TreeMap<>(snapshot.seminars);
+            // Seminars that can't be found anymore were deleted
+            copy.keySet().removeAll(staleIds);
+            staleIds.forEach(searchIndex::remove);
+            return load(seminarRepository.findAll(new ArrayList<>(staleIds)), copy);
+        });
+        snapshot = new Snapshot(instance + "-" + ++version, Collections.unmodifiableSortedMap(refreshed));
+        log.debug("Refreshed " + (staleIds.isEmpty() ? "all" : staleIds.size()) + " cached seminars");
+        staleIds.clear();
+        stale = false;
+        refreshes.incrementAndGet();
+        lastRefreshMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        return snapshot;
+    }
+
+    private synchronized void markStale(Collection<Long> ids) {
+        if (snapshot != null) {
+            staleIds.addAll(ids);
+            stale = true;
+        }
+    }
+
+    private SortedMap<Long, CachedSeminar> load(Iterable<Seminar> seminars, SortedMap<Long, CachedSeminar> target) {
+        for (Seminar seminar : seminars) {
+            SeminarDTO dto = SeminarFactory.toSeminarDTO(seminar);
+            target.put(seminar.getId(), new CachedSeminar(dto, seminar.getLastDate()));
+            searchIndex.put(seminar.getId(), dto);
+        }
+        return target;
+    }
+
+    /**
+     * The seminars of the catalog at one point in time, they never change
+     */
+    public static class Snapshot {
+
+        private final String version;
+        private final SortedMap<Long, CachedSeminar> seminars;
+
+        private Snapshot(String version, SortedMap<Long, CachedSeminar> seminars) {
+            this.version = version;
+            this.seminars = seminars;
+        }
+
+        /**
+         * Returns the version of the seminars at the given date, to be used as ETag. It changes with every refresh
+         * of the catalog and whenever a seminar becomes past.
+         */
+        public String getVersion(Date date) {
+            return version + "-" + getPastSeminars(date).size();
+        }
+
+        /**
+         * Returns all seminars, ordered by ID
+         */
+        public List<SeminarDTO> getAllSeminars() {
+            return filter(seminar -> true);
+        }
+
+        /**
+         * Returns all seminars that have no more dates in the future of the given date
+         */
+        public List<SeminarDTO> getPastSeminars(Date date) {
+            return filter(seminar -> seminar.lastDate != null && !seminar.lastDate.after(date));
+        }
+
+        /**
+         * Returns all seminars that have at least 1 date in the future of the given date (or no dates at all)
+         */
+        public List<SeminarDTO> getCurrentSeminars(Date date) {
+            return filter(seminar -> seminar.lastDate == null || seminar.lastDate.after(date));
+        }
+
+        private List<SeminarDTO> filter(Predicate<CachedSeminar> predicate) {
+            List<SeminarDTO> result = new ArrayList<>();
+            for (CachedSeminar seminar : seminars.values()) {
+                if (predicate.test(seminar)) {
+                    result.add(seminar.dto);
+                }
+            }
+            return result;
+        }
+    }
+
+    /**
+     * The DTO of a seminar with its last date, which is needed to tell current from past seminars
+     */
+    private static class CachedSeminar {
+
+        private final SeminarDTO dto;
+        private final Date lastDate;
+
+        CachedSeminar(SeminarDTO dto, Date lastDate) {
+            this.dto = dto;
+            this.lastDate = lastDate;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package de.fh.rosenheim.aline.service;
+
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarDTO;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+/**
+ * Inverted index over the texts of the seminars (name, category, trainer, goal, description and agenda).
+ * Every word points to the seminars containing it, together with a score that weights matches in the name higher
+ * than matches in the long texts. Seminars are added and removed one at a time, so the index never has to be
+ * rebuilt as a whole. Thread safe.
+ */
+public class SeminarSearchIndex {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final int NAME_WEIGHT = 10;
+    private static final int KEYWORD_WEIGHT = 5;
+    private static final int TEXT_WEIGHT = 1;
+
+    /**
+     * Score of a word that only starts with the searched word, compared to an exact match
+     */
+    private static final int PREFIX_DIVISOR = 2;
+
+    /**
+     * Word -> seminar ID -> score, sorted by word so words can be searched by prefix
+     */
+    private final NavigableMap<String, Map<Long, Integer>> postings = new TreeMap<>();
+    private final Map<Long, Set<String>> wordsBySeminar = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Adds the seminar to the index, an already indexed seminar with the same ID is replaced
+     */
+    public void put(long id, SeminarDTO seminar) {
+        Map<String, Integer> scores = new HashMap<>();
+        addWords(scores, seminar.getName(), NAME_WEIGHT);
+        addWords(scores, seminar.getCategory(), KEYWORD_WEIGHT);
+        addWords(scores, seminar.getTrainer(), KEYWORD_WEIGHT);
+        addWords(scores, seminar.getGoal(), TEXT_WEIGHT);
+        addWords(scores, seminar.getDescription(), TEXT_WEIGHT);
+        addWords(scores, seminar.getAgenda(), TEXT_WEIGHT);
+
+        lock.writeLock().lock();
+        try {
+            removeSeminar(id);
+            for (Map.Entry<String, Integer> score : scores.entrySet()) {
+                postings.computeIfAbsent(score.getKey(), word -> new HashMap<>()).put(id, score.getValue());
+            }
+            wordsBySeminar.put(id, scores.keySet());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the seminar from the index, nothing happens if it isn't indexed
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeSeminar(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the IDs of all seminars that contain every word of the query (or a word starting with it),
+     * the best matches first. Seminars with the same score are ordered by ID.
+     */
+    public List<Long> search(String query) {
+        Set<String> words = new LinkedHashSet<>(tokenize(query));
+        if (words.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, Integer> scores = null;
+        lock.readLock().lock();
+        try {
+            for (String word : words) {
+                Map<Long, Integer> wordScores = score(word);
+                if (scores == null) {
+                    scores = wordScores;
+                } else {
+                    scores.keySet().retainAll(wordScores.keySet());
+                    scores.replaceAll((id, score) -> score + wordScores.get(id));
+                }
+                if (scores.isEmpty()) {
+                    return Collections.emptyList();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Map.Entry<Long, Integer>> ranked = new ArrayList<>(scores.entrySet());
+        ranked.sort(Map.Entry.<Long, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        List<Long> ids = new ArrayList<>(ranked.size());
+        for (Map.Entry<Long, Integer> entry : ranked) {
+            ids.add(entry.getKey());
+        }
+        return ids;
+    }
+
+    /**
+     * Splits the text into lower case words
+     */
+    static List<String> tokenize(String text) {
+        if (text == null) {
+            return Collections.emptyList();
+        }
+        List<String> words = new ArrayList<>();
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * Scores of all seminars with a word starting with the given word, exact matches score higher
+     */
+    private Map<Long, Integer> score(String word) {
+        Map<Long, Integer> scores = new HashMap<>();
+        SortedMap<String, Map<Long, Integer>> matches = postings.subMap(word, true, word + Character.MAX_VALUE, false);
+        for (Map.Entry<String, Map<Long, Integer>> posting : matches.entrySet()) {
+            int divisor = posting.getKey().equals(word) ? 1 : PREFIX_DIVISOR;
+            posting.getValue().forEach((id, score) -> scores.merge(id, Math.max(score / divisor, 1), Integer::sum));
+        }
+        return scores;
+    }
+
+    private void removeSeminar(long id) {
+        Set<String> words = wordsBySeminar.remove(id);
+        if (words != null) {
+            for (String word : words) {
+                Map<Long, Integer> seminars = postings.get(word);
+                seminars.remove(id);
+                if (seminars.isEmpty()) {
+                    postings.remove(word);
+                }
+            }
+        }
+    }
+
+    private static void addWords(Map<String, Integer> scores, String text, int weight) {
+        for (String word : tokenize(text)) {
+            scores.merge(word, weight, Integer::sum);
+        }
+    }
+}
@@ -1,41 +1,77 @@
 package de.fh.rosenheim.aline.service;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Sets;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
 import de.fh.rosenheim.aline.model.domain.Category;
 import de.fh.rosenheim.aline.model.domain.Seminar;
 import de.fh.rosenheim.aline.model.dtos.bill.BillDTO;
 import de.fh.rosenheim.aline.model.dtos.bill.BillFactory;
 import de.fh.rosenheim.aline.model.dtos.seminar.SeminarBasicsDTO;
 import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFactory;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFilterDTO;
 import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
 import de.fh.rosenheim.aline.model.exceptions.UnknownCategoryException;
+import de.fh.rosenheim.aline.repository.BookingRepository;
 import de.fh.rosenheim.aline.repository.CategoryRepository;
 import de.fh.rosenheim.aline.repository.SeminarRepository;
-import de.fh.rosenheim.aline.util.SeminarUtil;
+import de.fh.rosenheim.aline.repository.SeminarSpecifications;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Objects;
+import java.util.function.Consumer;
 
 import static de.fh.rosenheim.aline.util.LoggingUtil.currentUser;
 
 @Service
 public class SeminarService {
 
+    /**
+     * Number of seminars that are loaded (and marked as billed) at once when generating multiple bills
+     */
+    private static final int BILL_BATCH_SIZE = 50;
+
     private final Logger log = LoggerFactory.getLogger(this.getClass());
 
     private final SeminarRepository seminarRepository;
     private final CategoryRepository categoryRepository;
+    private final BookingRepository bookingRepository;
     private final BillFactory billFactory;
+    private final SeminarCatalog seminarCatalog;
+    private final SpendingLedgerService spendingLedgerService;
+    private final DivisionRollupService divisionRollupService;
+
+    /**
+     * Names of all categories in the order of the database, null until first used
+     */
+    private volatile ImmutableSet<String> categories;
 
-    public SeminarService(SeminarRepository seminarRepository, CategoryRepository categoryRepository, BillFactory billFactory) {
+    public SeminarService(SeminarRepository seminarRepository, CategoryRepository categoryRepository,
+                          BookingRepository bookingRepository, BillFactory billFactory,
+                          SeminarCatalog seminarCatalog, SpendingLedgerService spendingLedgerService,
+                          DivisionRollupService divisionRollupService) {
         this.seminarRepository = seminarRepository;
         this.categoryRepository = categoryRepository;
+        this.bookingRepository = bookingRepository;
         this.billFactory = billFactory;
+        this.seminarCatalog = seminarCatalog;
+        this.spendingLedgerService = spendingLedgerService;
+        this.divisionRollupService = divisionRollupService;
     }
 
     /**
@@ -50,26 +86,40 @@ public class SeminarService {
     }
 
     /**
-     * Returns all available seminars
+     * Returns the seminar with the given ID and locks it until the current transaction ends.
+     * Must be called inside of a transaction.
+     */
+    public Seminar getSeminarForUpdate(long id) throws NoObjectForIdException {
+        Seminar seminar = seminarRepository.findOneForUpdate(id);
+        if (seminar == null) {
+            throw new NoObjectForIdException(Seminar.class, id);
+        }
+        return seminar;
+    }
+
+    /**
+     * Returns the seminars with the given IDs and locks them until the current transaction ends.
+     * They are locked in the order of their IDs, so two transactions locking overlapping seminars can't deadlock.
+     * Must be called inside of a transaction.
      */
-    public Iterable<Seminar> getAllSeminars() {
-        return seminarRepository.findAll();
+    public List<Seminar> getSeminarsForUpdate(Collection<Long> ids) {
+        return ids.isEmpty() ? Collections.emptyList() : seminarRepository.findAllForUpdate(ids);
     }
 
     /**
-     * Returns all seminars that have no more dates in the future
+     * Returns a single page of the seminars matching the given filter.
+     * Filtering, sorting and paging are all done by the database.
      */
-    public Iterable<Seminar> getPastSeminars() {
-        Date today = new Date();
-        return filterForSeminarsByDate(Lists.newArrayList(seminarRepository.findAll()), today, true);
+    public Page<Seminar> getSeminars(SeminarFilterDTO filter, Pageable pageable) {
+        return seminarRepository.findAll(SeminarSpecifications.matching(filter), pageable);
     }
 
     /**
-     * Returns all seminars that have at least 1 date in the future
+     * Returns a version of the seminar lists that changes whenever any of the lists (all, current or past seminars)
+     * would return something different, so clients can keep their copy as long as the version stays the same
      */
-    public Iterable<Seminar> getCurrentSeminars() {
-        Date today = new Date();
-        return filterForSeminarsByDate(Lists.newArrayList(seminarRepository.findAll()), today, false);
+    public String getCatalogVersion() {
+        return seminarRepository.findCatalogVersion(new Date()).toETag();
     }
 
     /**
@@ -77,7 +127,11 @@ public class SeminarService {
      */
     public void deleteSeminar(long id) throws NoObjectForIdException {
         try {
+            // Has to happen before the bookings of the participants are deleted along with the seminar
+            spendingLedgerService.seminarChanged(id);
+            divisionRollupService.seminarChanged(id);
             seminarRepository.delete(id);
+            seminarCatalog.invalidate(id);
             log.info(currentUser() + "deleted seminar with id=" + id + " successfully.");
         } catch (EmptyResultDataAccessException emptyResultDataAccessException) {
             log.info(currentUser() + "tried to deleted non existing seminar with id=" + id + " unsuccessfully.");
@@ -96,6 +150,7 @@ public class SeminarService {
         Seminar seminar = SeminarFactory.createSeminar(basics);
         checkCategory(seminar.getCategory());
         seminarRepository.save(seminar);
+        seminarCatalog.invalidate(seminar.getId());
         log.info(currentUser() + "created a new seminar with id=" + seminar.getId() + " successfully.");
         return seminar;
     }
@@ -106,75 +161,131 @@ public class SeminarService {
      */
     public Seminar updateSeminar(long id, SeminarBasicsDTO newSeminarData) throws NoObjectForIdException, UnknownCategoryException {
         Seminar seminar = getSeminar(id);
+        long oldCosts = seminar.getCostsPerParticipant();
+        Date oldLastDate = seminar.getLastDate();
+        String oldCategory = seminar.getCategory();
         SeminarFactory.updateSeminar(seminar, newSeminarData);
         checkCategory(seminar.getCategory());
         seminarRepository.save(seminar);
+        boolean costsChanged = oldCosts != seminar.getCostsPerParticipant()
+                || !Objects.equals(oldLastDate, seminar.getLastDate());
+        if (costsChanged) {
+            spendingLedgerService.seminarChanged(id);
+        }
+        if (costsChanged || !Objects.equals(oldCategory, seminar.getCategory())) {
+            divisionRollupService.seminarChanged(id);
+        }
+        seminarCatalog.invalidate(id);
         log.info(currentUser() + "updated seminar with id=" + seminar.getId() + " successfully.");
         return seminar;
     }
 
     /**
      * Generates a bill for the given seminar
+     * Participants and division sums are queried directly, so no bookings of the participants have to be loaded
      */
     public BillDTO getBill(long id) throws NoObjectForIdException {
         Seminar seminar = getSeminar(id);
-        BillDTO bill = billFactory.generateBill(seminar);
+        BillDTO bill = generateBill(seminar);
         seminar.setBillGenerated(true);
         seminarRepository.save(seminar);
+        seminarCatalog.invalidate(id);
         return bill;
     }
 
     /**
-     * Returns all available Categories
+     * Has to be called if a seminar was changed outside of this service (i.e. its active booking count),
+     * so the cached seminar is reloaded
+     */
+    public void seminarChanged(Seminar seminar) {
+        seminarCatalog.invalidate(seminar.getId());
+    }
+
+    /**
+     * Generates the bills for all seminars matching the filter in a single transaction.
+     * The seminars are loaded in batches and every bill is passed to the consumer as soon as it is generated,
+     * so not all bills have to be kept in memory. The bill flags of each batch are set with a single update.
+     *
+     * @return the number of generated bills
+     */
+    @Transactional
+    public int generateBills(SeminarFilterDTO filter, Consumer<BillDTO> consumer) {
+        Specification<Seminar> specification = SeminarSpecifications.matching(filter);
+        Pageable pageable = new PageRequest(0, BILL_BATCH_SIZE, Sort.Direction.ASC, "id");
+        int billCount = 0;
+        Page<Seminar> page;
+        do {
+            page = seminarRepository.findAll(specification, pageable);
+            List<Long> ids = new ArrayList<>();
+            for (Seminar seminar : page) {
+                consumer.accept(generateBill(seminar));
+                ids.add(seminar.getId());
+            }
+            if (!ids.isEmpty()) {
+                seminarRepository.markBillsGenerated(ids);
+                seminarCatalog.invalidate(ids);
+            }
+            billCount += ids.size();
+            pageable = page.nextPageable();
+        } while (page.hasNext());
+        log.info(currentUser() + "generated " + billCount + " bills successfully.");
+        return billCount;
+    }
+
+    private BillDTO generateBill(Seminar seminar) {
+        long id = seminar.getId();
+        return billFactory.generateBill(
+                seminar,
+                bookingRepository.findUsersBySeminarIdAndStatus(id, BookingStatus.GRANTED),
+                bookingRepository.sumCostsBySeminarIdAndStatusGroupByDivision(id, BookingStatus.GRANTED));
+    }
+
+    /**
+     * Returns all available Categories, served from memory after the first call
      *
-     * @return A list of categories
+     * @return A list of category names
      */
     public List<String> getAllCategories() {
-        return Lists.newArrayList(this.categoryRepository.findAll())
-                .stream().map(Category::getName).collect(Collectors.toList());
+        return getCategories().asList();
     }
 
-    public void addCategory(Category category) {
+    public synchronized void addCategory(Category category) {
         categoryRepository.save(category);
+        categories = ImmutableSet.<String>builder().addAll(getCategories()).add(category.getName()).build();
         log.info(currentUser() + "created a new seminar with id=" + category.getName() + "successfully.");
     }
 
-    public void deleteCategory(String categoryName) {
+    public synchronized void deleteCategory(String categoryName) {
         categoryRepository.delete(categoryName);
+        categories = ImmutableSet.copyOf(Sets.filter(getCategories(), name -> !name.equals(categoryName)));
     }
 
     /**
-     * Checks the given category against the data from the database
+     * Checks the given category against the known categories
      *
      * @param category The name of the category
      * @throws UnknownCategoryException if the given category is unknown
      */
     private void checkCategory(String category) throws UnknownCategoryException {
-        List<String> categories = getAllCategories();
+        ImmutableSet<String> categories = getCategories();
         if (!categories.contains(category)) {
-            throw new UnknownCategoryException(categories);
+            throw new UnknownCategoryException(categories.asList());
         }
     }
 
     /**
-     * Filters seminars in regards if they are "in the past" of a given date or not.
-     * All dates of the seminar are before the given date = seminar is before the given date
-     * At least 1 date of the seminar is after the given date = seminar after the given date
-     *
-     * @param seminars        all seminars
-     * @param referenceDate   the date used for comparison
-     * @param getPastSeminars true = return seminars that are before the date
-     *                        false = return seminars that are after the given date
-     * @return A list of seminars either in the past or future compared to the given date
-     */
-    private List<Seminar> filterForSeminarsByDate(List<Seminar> seminars, Date referenceDate, boolean getPastSeminars) {
-        return seminars.stream().filter(seminar -> {
-            Date latestDate = SeminarUtil.getLastDate(seminar);
-            if (latestDate == null) {
-                // If there are no dates, don't return it as a past seminar, but as a future seminar
-                return !getPastSeminars;
+     * Loads the categories with the first call, afterwards they are only changed by add- and deleteCategory
+     */
+    private ImmutableSet<String> getCategories() {
+        ImmutableSet<String> current = categories;
+        if (current == null) {
+            synchronized (this) {
+                if (categories == null) {
+                    categories = ImmutableSet.copyOf(Iterables.transform(categoryRepository.findAll(), Category::getName));
+                }
+                current = categories;
             }
-            return latestDate.after(referenceDate) != getPastSeminars;
-        }).collect(Collectors.toList());
+        }
+        return current;
     }
 }
@@ -0,0 +1,313 @@
+package de.fh.rosenheim.aline.service;
+
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.SpendingLedgerEntry;
+import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingFactory;
+import de.fh.rosenheim.aline.repository.BookingRepository;
+import de.fh.rosenheim.aline.repository.SpendingLedgerRepository;
+import de.fh.rosenheim.aline.util.DateUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Maintains the spending ledger, the spendings of every user per year (see {@link SpendingLedgerEntry}).
+ * Status changes of bookings are collected per transaction and applied to the entries of the user in a new
+ * transaction once the booking is committed, so bookings don't hold the lock of their seminar while waiting for the
+ * ledger. The entries are locked user by user, ordered by username. Users without stored entries are skipped, so
+ * bookings of users whose ledger is never read don't touch the entries at all. Changes to the costs or dates of a
+ * seminar remove the entries of all participants. Missing and expired entries are rebuilt from the bookings with the
+ * next read.
+ */
+@Service
+public class SpendingLedgerService {
+
+    private final Logger log = LoggerFactory.getLogger(this.getClass());
+
+    private final SpendingLedgerRepository spendingLedgerRepository;
+    private final BookingRepository bookingRepository;
+    private final BookingFactory bookingFactory;
+    private final DateUtil dateUtil;
+    private final TransactionTemplate newTransactionTemplate;
+
+    /**
+     * The users with changes of bookings that are committed (or about to be) but not applied to the ledger yet
+     */
+    private final ConcurrentMap<String, ChangeActivity> activities = new ConcurrentHashMap<>();
+
+    public SpendingLedgerService(SpendingLedgerRepository spendingLedgerRepository,
+                                 BookingRepository bookingRepository, BookingFactory bookingFactory,
+                                 DateUtil dateUtil, PlatformTransactionManager transactionManager) {
+        this.spendingLedgerRepository = spendingLedgerRepository;
+        this.bookingRepository = bookingRepository;
+        this.bookingFactory = bookingFactory;
+        this.dateUtil = dateUtil;
+        // Rebuilds get a fresh persistence context, so they never see bookings that were loaded before
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Returns the spending ledgers of the given users by username, loaded with a single query.
+     * Ledgers that are missing or expired are rebuilt from the bookings of the user first.
+     * Users without bookings have no ledger, the bookings of the users are not loaded for checking that.
+     */
+    public Map<String, List<SpendingLedgerEntry>> getLedgers(Iterable<User> users) {
+        Map<String, List<SpendingLedgerEntry>> ledgers = new HashMap<>();
+        Set<String> usernames = new HashSet<>();
+        users.forEach(user -> usernames.add(user.getUsername()));
+        if (usernames.isEmpty()) {
+            return ledgers;
+        }
+        for (SpendingLedgerEntry entry : spendingLedgerRepository.findByUsernameIn(usernames)) {
+            ledgers.computeIfAbsent(entry.getUsername(), username -> new ArrayList<>()).add(entry);
+        }
+
+        Date currentDate = dateUtil.getCurrentDate();
+        for (User user : users) {
+            List<SpendingLedgerEntry> ledger = ledgers.get(user.getUsername());
+            if (ledger == null
+                    ? bookingRepository.countByUserUsername(user.getUsername()) > 0
+                    : isExpired(ledger, currentDate)) {
+                ledgers.put(user.getUsername(), rebuild(user.getUsername()));
+            }
+        }
+        return ledgers;
+    }
+
+    /**
+     * Returns the spending ledger of the user, see {@link #getLedgers(Iterable)}
+     */
+    public List<SpendingLedgerEntry> getLedger(User user) {
+        return getLedgers(Collections.singleton(user)).getOrDefault(user.getUsername(), Collections.emptyList());
+    }
+
+    /**
+     * Moves the booking from the old to the new status in the ledger of its user. Inside of a transaction the change
+     * is applied after the commit, together with all other changes of the transaction.
+     *
+     * @param oldStatus null for new bookings
+     * @param newStatus null for deleted bookings
+     */
+    public void bookingChanged(Booking booking, BookingStatus oldStatus, BookingStatus newStatus) {
+        if (oldStatus == newStatus) {
+            return;
+        }
+        String username = booking.getUser().getUsername();
+        boolean transactional = TransactionSynchronizationManager.isSynchronizationActive();
+        Map<String, List<SpendingLedgerEntry>> changes = transactional ? getPendingChanges() : new HashMap<>();
+        List<SpendingLedgerEntry> userChanges = changes.computeIfAbsent(username, key -> new ArrayList<>());
+        bookingFactory.addToSpendingLedger(userChanges, username, booking.getSeminar(), oldStatus, -1);
+        bookingFactory.addToSpendingLedger(userChanges, username, booking.getSeminar(), newStatus, 1);
+        if (!transactional) {
+            ChangeActivity activity = getActivity(username);
+            activity.begin();
+            try {
+                applyInNewTransaction(changes);
+            } finally {
+                activity.end();
+            }
+        }
+    }
+
+    /**
+     * Removes the ledgers of all participants of the seminar, has to be called after the costs or dates of the
+     * seminar were changed and before the seminar is deleted
+     */
+    public void seminarChanged(long seminarId) {
+        int removed = spendingLedgerRepository.deleteBySeminarId(seminarId);
+        log.debug("Removed " + removed + " spending ledger entries of the participants of seminar with id=" + seminarId);
+    }
+
+    /**
+     * Returns the changes of the current transaction by username, which are applied after the commit.
+     * Their users are marked as changed right before the commit until the changes are applied, so a concurrent
+     * rebuild doesn't store a ledger that might already contain them.
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, List<SpendingLedgerEntry>> getPendingChanges() {
+        Map<String, List<SpendingLedgerEntry>> changes =
+                (Map<String, List<SpendingLedgerEntry>>) TransactionSynchronizationManager.getResource(this);
+        if (changes == null) {
+            Map<String, List<SpendingLedgerEntry>> pending = new HashMap<>();
+            List<ChangeActivity> begun = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    for (String username : pending.keySet()) {
+                        ChangeActivity activity = getActivity(username);
+                        activity.begin();
+                        begun.add(activity);
+                    }
+                }
+
+                @Override
+                public void afterCommit() {
+                    applyInNewTransaction(pending);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(SpendingLedgerService.this);
+                    begun.forEach(ChangeActivity::end);
+                }
+            });
+            changes = pending;
+        }
+        return changes;
+    }
+
+    /**
+     * Applies the changes in a new transaction. The booking is already committed at this point, so a failure must
+     * not reach the caller: the ledgers of the affected users are removed instead, they are rebuilt with the next
+     * read. Changes of users without stored entries are dropped first, without locking anything. A ledger that is
+     * rebuilt concurrently is removed again by the rebuild, because the user was marked as changed.
+     */
+    private void applyInNewTransaction(Map<String, List<SpendingLedgerEntry>> changes) {
+        changes.keySet().removeIf(username -> spendingLedgerRepository.countByUsername(username) == 0);
+        if (changes.isEmpty()) {
+            return;
+        }
+        try {
+            newTransactionTemplate.execute(status -> {
+                apply(changes);
+                return null;
+            });
+        } catch (RuntimeException e) {
+            Set<String> usernames = new TreeSet<>(changes.keySet());
+            log.warn("Could not update the spending ledger of users=" + usernames + ", it is removed", e);
+            try {
+                newTransactionTemplate.execute(status -> {
+                    usernames.forEach(spendingLedgerRepository::deleteByUsername);
+                    return null;
+                });
+            } catch (RuntimeException removeException) {
+                log.error("Could not remove the spending ledger of users=" + usernames + ", it has to be rebuilt", removeException);
+            }
+        }
+    }
+
+    /**
+     * Adds the changes to the entries, user by user in the order of their usernames. If an entry is missing or
+     * expired, the ledger of its user is removed, it is rebuilt with the next read.
+     */
+    private void apply(Map<String, List<SpendingLedgerEntry>> changes) {
+        Date currentDate = dateUtil.getCurrentDate();
+        new TreeMap<>(changes).forEach((username, userChanges) -> {
+            // Changes that cancel each other out are skipped
+            if (userChanges.stream().allMatch(SpendingLedgerEntry::isEmpty)) {
+                return;
+            }
+            List<SpendingLedgerEntry> ledger = spendingLedgerRepository.findByUsernameForUpdate(username);
+            if (ledger.isEmpty()) {
+                // Removed in the meantime, it is built with the next read
+                return;
+            }
+            if (isExpired(ledger, currentDate) || !add(ledger, userChanges)) {
+                spendingLedgerRepository.deleteByUsername(username);
+                log.debug("Removed the spending ledger of user with username=" + username);
+            } else {
+                spendingLedgerRepository.save(ledger);
+            }
+        });
+        changes.clear();
+    }
+
+    /**
+     * Rebuilds the ledger of the user from the bookings. It is only stored if no booking of the user was changed in
+     * the meantime, otherwise it is returned for this read only.
+     */
+    private List<SpendingLedgerEntry> rebuild(String username) {
+        long mark = getActivity(username).mark();
+        Map<String, Long> storedMarks = new HashMap<>();
+        List<SpendingLedgerEntry> rebuilt = newTransactionTemplate.execute(status -> {
+            // Deleted first, so changes of bookings that are not committed yet are waited for
+            spendingLedgerRepository.deleteByUsername(username);
+            List<Booking> bookings = bookingRepository.findWithSeminarByUserUsername(username);
+            List<SpendingLedgerEntry> ledger = bookingFactory.toSpendingLedger(username, bookings);
+            if (isUnchangedSince(username, mark)) {
+                spendingLedgerRepository.save(ledger);
+                storedMarks.put(username, mark);
+                log.debug("Rebuilt the spending ledger of user with username=" + username + " from " + bookings.size() + " bookings");
+            } else {
+                log.debug("Rebuilt the spending ledger of user with username=" + username + " without storing it, bookings of the user were changed concurrently");
+            }
+            return ledger;
+        });
+        removeChangedSince(storedMarks);
+        return rebuilt;
+    }
+
+    /**
+     * Removes the stored ledger of the users with booking changes since their mark was taken. The changes are
+     * dropped if the user has no entries yet, so a ledger that was stored while they were applied may miss them.
+     */
+    private void removeChangedSince(Map<String, Long> marks) {
+        Set<String> changed = new TreeSet<>();
+        marks.forEach((username, mark) -> {
+            if (!isUnchangedSince(username, mark)) {
+                changed.add(username);
+            }
+        });
+        if (!changed.isEmpty()) {
+            newTransactionTemplate.execute(status -> {
+                changed.forEach(spendingLedgerRepository::deleteByUsername);
+                return null;
+            });
+            log.debug("Removed the spending ledger of users=" + changed + ", their bookings were changed while it was rebuilt");
+        }
+    }
+
+    private ChangeActivity getActivity(String username) {
+        return activities.computeIfAbsent(username, key -> new ChangeActivity());
+    }
+
+    /**
+     * Whether no booking of the user was changed since the mark was taken and no change is pending
+     */
+    private boolean isUnchangedSince(String username, long mark) {
+        ChangeActivity activity = activities.get(username);
+        return activity == null ? mark == 0 : activity.isUnchangedSince(mark);
+    }
+
+    /**
+     * Adds the changes to the entries of the same year
+     *
+     * @return false if the ledger has no entry for the year of a change, so it can't be updated
+     */
+    private static boolean add(List<SpendingLedgerEntry> ledger, List<SpendingLedgerEntry> changes) {
+        for (SpendingLedgerEntry change : changes) {
+            if (change.isEmpty()) {
+                continue;
+            }
+            SpendingLedgerEntry entry = ledger.stream()
+                    .filter(candidate -> candidate.getYear() == change.getYear()).findFirst().orElse(null);
+            if (entry == null) {
+                return false;
+            }
+            entry.add(change);
+        }
+        return true;
+    }
+
+    private static boolean isExpired(List<SpendingLedgerEntry> ledger, Date currentDate) {
+        for (SpendingLedgerEntry entry : ledger) {
+            if (entry.isExpired(currentDate)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
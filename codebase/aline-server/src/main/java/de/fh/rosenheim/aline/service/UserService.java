@@ -26,8 +26,22 @@ public class UserService {
         return user;
     }
 
+    /**
+     * Returns the user with all bookings (and their seminars) already loaded
+     */
+    public User getUserWithBookingsByName(String name) throws NoObjectForIdException {
+        User user = userRepository.findWithBookingsByUsername(name);
+        if (user == null) {
+            throw new NoObjectForIdException(User.class, name);
+        }
+        return user;
+    }
+
+    /**
+     * Returns all users of the division with all bookings (and their seminars) already loaded
+     */
     public Iterable<User> getUsersForDivision(String division) {
-        return userRepository.findByDivision(division);
+        return userRepository.findWithBookingsByDivision(division);
     }
 
     public List<String> getAllUserNames() {
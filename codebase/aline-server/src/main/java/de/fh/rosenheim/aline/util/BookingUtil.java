@@ -21,8 +21,12 @@ public class BookingUtil {
         this.userFactory = userFactory;
     }
 
+    /**
+     * Generates the BookingDTO for the booking endpoints
+     * Their views only contain the basic user data, so the bookings of the user are not converted
+     */
     public BookingDTO generateBookingDTO(Booking booking) {
-        UserDTO userDTO = userFactory.toUserDTO(booking.getUser());
+        UserDTO userDTO = userFactory.toUserBasicsDTO(booking.getUser());
         return bookingFactory.toBookingDTO(booking, userDTO);
     }
 }
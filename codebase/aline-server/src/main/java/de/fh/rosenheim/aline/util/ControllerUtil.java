@@ -2,7 +2,10 @@ package de.fh.rosenheim.aline.util;
 
 import de.fh.rosenheim.aline.security.utils.TokenUtils;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.ServletWebRequest;
 
 import javax.servlet.http.HttpServletRequest;
 
@@ -36,4 +39,17 @@ public class ControllerUtil {
     public String getUsername(HttpServletRequest request) {
         return tokenUtils.getUsernameFromToken(getToken(request));
     }
+
+    /**
+     * Compares the ETag of the request with the current version of the requested data.
+     * If they match, the response is set to 304 Not Modified and no body has to be generated.
+     * Either way, the client may keep the response as long as it revalidates it on every use.
+     *
+     * @param version the current version, used as ETag
+     * @return true if the client already has the current version
+     */
+    public boolean isNotModified(ServletWebRequest request, String version) {
+        request.getResponse().setHeader(HttpHeaders.CACHE_CONTROL, CacheControl.noCache().cachePrivate().getHeaderValue());
+        return request.checkNotModified(version);
+    }
 }
@@ -1,13 +1,9 @@
 package de.fh.rosenheim.aline.util;
 
-import de.fh.rosenheim.aline.model.domain.BookingStatus;
 import de.fh.rosenheim.aline.model.domain.Seminar;
 
-import java.util.Arrays;
 import java.util.Calendar;
-import java.util.Collections;
 import java.util.Date;
-import java.util.stream.Collectors;
 
 /**
  * Simple utils for everything seminar related
@@ -15,14 +11,12 @@ import java.util.stream.Collectors;
 public class SeminarUtil {
 
     /**
-     * Returns the last of the seminar
+     * Returns the last date of the seminar
      *
      * @return the latest date or null
      */
     public static Date getLastDate(Seminar seminar) {
-        return seminar.getDates() == null || seminar.getDates().length < 1
-                ? null
-                : Collections.max(Arrays.asList(seminar.getDates()));
+        return seminar.getLastDate();
     }
 
     /**
@@ -41,17 +35,4 @@ public class SeminarUtil {
 
         return cal.get(Calendar.YEAR);
     }
-
-    /**
-     * Returns the number of active bookings. These are the bookings that are taken into account when checking if the
-     * seminar is already fully booked
-     *
-     * @return The number of active bookings
-     */
-    public static int getActiveBookingCount(Seminar seminar) {
-        return seminar.getBookings()
-                .stream()
-                .filter(booking -> !booking.getStatus().equals(BookingStatus.DENIED))
-                .collect(Collectors.toList()).size();
-    }
 }
@@ -7,6 +7,12 @@ public class SwaggerTexts {
 
     public final static String GET_USER_DATA = "Returns the data for the given user or if no username is given from the current user (detected via token).";
 
+    public final static String GET_USER_SPENDING = "Returns only the spendings per year (without the bookings) for the given user or if no username is given from the current user (detected via token).";
+
+    public final static String GET_DIVISION_ROLLUP = "Returns the spendings and booking counts per year and category for the given division or if no division is given, the division from the current user is used (detected via token).";
+
+    public final static String REBUILD_DIVISION_ROLLUP = "Rebuilds the spendings and booking counts of all divisions from the bookings and returns how many of them were corrected.";
+
     public final static String GET_DIVISION_USERS = "Returns the users for the given division or if no division is given, the division from the current user is used (detected via token). ";
 
     /**
@@ -14,6 +20,10 @@ public class SwaggerTexts {
      */
     public final static String SENSITIVE_DATA = "Accessing other user's data requires specific authorities.";
 
+    public final static String USER_BOOKINGS_YEAR = "Only the bookings of this year are returned, the spendings of all years are returned anyway. All bookings if not given.";
+
+    public final static String SEMINAR_FIELDS = "Use 'summary' to leave out the long texts (description, agenda, requirements, goal and booking timelog) of every seminar.";
+
     public final static String CURRENCY = "In euro cent. Example: 1234 = 12,34 Euro";
 
     public final static String ACTIVE_BOOKINGS = "All non-denied bookings (including requested but not yet granted)";
@@ -22,4 +32,7 @@ public class SwaggerTexts {
     public final static String PLANNED_TOTAL_SPENDING = "The total cost of all granted & requested seminars. " + CURRENCY;
     public final static String GRANTED_SPENDING = "The total cost of all granted seminars. " + CURRENCY;
     public final static String ISSUED_SPENDING = "The total cost of all seminars that have already taken place. " + CURRENCY;
+    public final static String REQUESTED_SPENDING = "The total cost of all requested but not yet granted seminars. " + CURRENCY;
+    public final static String REQUESTED_BOOKING_COUNT = "The number of bookings waiting for approval";
+    public final static String GRANTED_BOOKING_COUNT = "The number of granted bookings, a user with several granted seminars is counted once per seminar";
 }
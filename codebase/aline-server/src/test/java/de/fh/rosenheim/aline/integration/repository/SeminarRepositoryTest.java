@@ -0,0 +1,74 @@
+package de.fh.rosenheim.aline.integration.repository;
+
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarCatalogVersion;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFilterDTO;
+import de.fh.rosenheim.aline.repository.SeminarRepository;
+import de.fh.rosenheim.aline.repository.SeminarSpecifications;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+/**
+ * Checks the boundary between past and current seminars on the persisted last date of a seminar: a seminar is past
+ * once its last date is not after the given date, seminars without dates are never past
+ */
+@RunWith(SpringRunner.class)
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "logging.level.org.hibernate=WARN",
+        "spring.datasource.url=jdbc:h2:mem:seminarrepository;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE"})
+@Transactional
+public class SeminarRepositoryTest {
+
+    private static final String CATEGORY = "Boundary";
+    private static final Date NOW = new Date(1480000000000L);
+
+    @Autowired
+    private SeminarRepository seminarRepository;
+
+    @Test
+    public void countPastSeminarsUpToTheirLastDate() {
+        SeminarCatalogVersion before = seminarRepository.findCatalogVersion(NOW);
+        createSeminars();
+
+        SeminarCatalogVersion after = seminarRepository.findCatalogVersion(NOW);
+
+        assertThat(after.getSeminarCount() - before.getSeminarCount()).isEqualTo(4);
+        // Only "past" and "ending now"
+        assertThat(after.getPastSeminarCount() - before.getPastSeminarCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void filterSeminarsEndingFromTheGivenDate() {
+        createSeminars();
+        SeminarFilterDTO filter = new SeminarFilterDTO();
+        filter.setCategory(CATEGORY);
+        filter.setFrom(NOW);
+
+        assertThat(seminarRepository.findAll(SeminarSpecifications.matching(filter)))
+                .extracting("name").containsOnly("ending now", "future");
+    }
+
+    private void createSeminars() {
+        // The last date is the latest of all dates, whatever their order
+        createSeminar("past", new Date(NOW.getTime() - 1000), new Date(NOW.getTime() - 5000));
+        createSeminar("ending now", new Date(NOW.getTime() - 5000), NOW);
+        createSeminar("future", NOW, new Date(NOW.getTime() + 1000));
+        // Flushed by the queries, the transaction of the test is rolled back
+        createSeminar("undated");
+    }
+
+    private void createSeminar(String name, Date... dates) {
+        Seminar seminar = new Seminar();
+        seminar.setName(name);
+        seminar.setCategory(CATEGORY);
+        seminar.setDates(dates.length > 0 ? dates : null);
+        seminarRepository.save(seminar);
+    }
+}
@@ -0,0 +1,211 @@
+package de.fh.rosenheim.aline.integration.service;
+
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.model.exceptions.BookingException;
+import de.fh.rosenheim.aline.repository.BookingRepository;
+import de.fh.rosenheim.aline.repository.SeminarRepository;
+import de.fh.rosenheim.aline.repository.UserRepository;
+import de.fh.rosenheim.aline.security.utils.Authorities;
+import de.fh.rosenheim.aline.service.BookingService;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.junit4.SpringRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+/**
+ * Fires many parallel bookings against the embedded database to make sure seminars are never overbooked
+ * and checks the waitlist handing out freed seats
+ */
+@RunWith(SpringRunner.class)
+// The verbose SQL logging of the default configuration would dominate the measured lock times
+@SpringBootTest(properties = {"spring.jpa.show-sql=false", "logging.level.org.hibernate=WARN",
+        "spring.datasource.url=" + BookingConcurrencyTest.DATASOURCE_URL})
+public class BookingConcurrencyTest {
+
+    /**
+     * H2 1.0 has no row locks, locking a seminar locks the whole SEMINARS table, so all bookings queue up behind
+     * each other no matter which seminar they book. A booking waits for at most THREADS - 1 others, each holding the
+     * lock for a few milliseconds, which stays far below an explicit lock timeout of 10 s (H2's default is only 1 s).
+     * The retries of the booking service are not needed to pass, they are a fallback on top.
+     */
+    static final String DATASOURCE_URL =
+            "jdbc:h2:mem:concurrency;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE;LOCK_TIMEOUT=10000";
+
+    private static final int THREADS = 32;
+    private static final int USERS = 300;
+    private static final int MAXIMUM_PARTICIPANTS = 12;
+
+    @Autowired
+    private BookingService bookingService;
+    @Autowired
+    private BookingRepository bookingRepository;
+    @Autowired
+    private SeminarRepository seminarRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private final List<Seminar> seminars = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+    private final List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+
+    @After
+    public void cleanUp() {
+        seminars.forEach(seminar -> bookingRepository.delete(bookingRepository.findBySeminarId(seminar.getId())));
+        userRepository.delete(users);
+        seminarRepository.delete(seminars);
+    }
+
+    @Test
+    public void parallelBookingsDoNotOverbookSeminar() throws InterruptedException {
+        Seminar seminar = createSeminar(MAXIMUM_PARTICIPANTS);
+        createUsers(USERS);
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger waitlisted = new AtomicInteger();
+        runInParallel(i -> {
+            try {
+                if (bookingService.book(seminar.getId(), users.get(i).getUsername()).getStatus().isActive()) {
+                    booked.incrementAndGet();
+                } else {
+                    waitlisted.incrementAndGet();
+                }
+            } catch (BookingException e) {
+                failures.add(e);
+            }
+        });
+
+        assertThat(failures).isEmpty();
+        assertThat(booked.get()).isEqualTo(MAXIMUM_PARTICIPANTS);
+        assertThat(waitlisted.get()).isEqualTo(USERS - MAXIMUM_PARTICIPANTS);
+        assertThat(bookingRepository.findBySeminarId(seminar.getId()).stream()
+                .filter(booking -> booking.getStatus().isActive()).count()).isEqualTo(MAXIMUM_PARTICIPANTS);
+        assertThat(seminarRepository.findOne(seminar.getId()).getActiveBookingCount()).isEqualTo(MAXIMUM_PARTICIPANTS);
+    }
+
+    @Test
+    public void parallelBookingsForDifferentSeminarsAllSucceed() throws InterruptedException {
+        int seminarCount = 10;
+        for (int i = 0; i < seminarCount; i++) {
+            createSeminar(USERS / seminarCount);
+        }
+        createUsers(USERS);
+
+        AtomicInteger booked = new AtomicInteger();
+        runInParallel(i -> {
+            Seminar seminar = seminars.get(i % seminarCount);
+            try {
+                bookingService.book(seminar.getId(), users.get(i).getUsername());
+                booked.incrementAndGet();
+            } catch (BookingException e) {
+                failures.add(e);
+            }
+        });
+
+        assertThat(failures).isEmpty();
+        assertThat(booked.get()).isEqualTo(USERS);
+        seminars.forEach(seminar -> assertThat(seminarRepository.findOne(seminar.getId()).getActiveBookingCount())
+                .isEqualTo(USERS / seminarCount));
+    }
+
+    @Test
+    public void deletedBookingPromotesOldestWaitlistedBooking() throws Exception {
+        Seminar seminar = createSeminar(1);
+        createUsers(3);
+
+        Booking seat = bookAs(users.get(0), seminar);
+        Booking first = bookAs(users.get(1), seminar);
+        Booking second = bookAs(users.get(2), seminar);
+        assertThat(first.getStatus()).isEqualTo(BookingStatus.WAITLISTED);
+        assertThat(second.getStatus()).isEqualTo(BookingStatus.WAITLISTED);
+
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(users.get(0).getUsername(), null));
+        try {
+            bookingService.deleteBooking(seat.getId());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+
+        assertThat(bookingRepository.findOne(first.getId()).getStatus()).isEqualTo(BookingStatus.REQUESTED);
+        assertThat(bookingRepository.findOne(second.getId()).getStatus()).isEqualTo(BookingStatus.WAITLISTED);
+        assertThat(seminarRepository.findOne(seminar.getId()).getActiveBookingCount()).isEqualTo(1);
+    }
+
+    private Booking bookAs(User user, Seminar seminar) throws BookingException {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(user.getUsername(), null));
+        try {
+            return bookingService.book(seminar.getId(), user.getUsername());
+        } finally {
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    private Seminar createSeminar(int maximumParticipants) {
+        Seminar seminar = new Seminar();
+        seminar.setName("Concurrency " + seminars.size());
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(maximumParticipants);
+        seminar = seminarRepository.save(seminar);
+        seminars.add(seminar);
+        return seminar;
+    }
+
+    private void createUsers(int count) {
+        for (int i = 0; i < count; i++) {
+            users.add(userRepository.save(User.builder()
+                    .username("concurrency" + i)
+                    .division("FIT")
+                    .authorities(Authorities.EMPLOYEE)
+                    .build()));
+        }
+    }
+
+    /**
+     * Runs the booking for every created user on a thread pool, each booking is done as the user itself.
+     * Unexpected exceptions are collected as failures instead of getting lost in the pool.
+     */
+    private void runInParallel(IntConsumer booking) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < users.size(); i++) {
+            int index = i;
+            executor.submit(() -> {
+                SecurityContextHolder.getContext().setAuthentication(
+                        new UsernamePasswordAuthenticationToken(users.get(index).getUsername(), null));
+                try {
+                    start.await();
+                    booking.accept(index);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                } finally {
+                    SecurityContextHolder.clearContext();
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).isTrue();
+    }
+}
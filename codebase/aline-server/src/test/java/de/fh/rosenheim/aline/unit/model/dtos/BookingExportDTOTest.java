@@ -0,0 +1,28 @@
+package de.fh.rosenheim.aline.unit.model.dtos;
+
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingExportDTO;
+import org.junit.Test;
+
+import java.util.Date;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class BookingExportDTOTest {
+
+    @Test
+    public void toCsv() {
+        BookingExportDTO row = new BookingExportDTO(12, BookingStatus.GRANTED, new Date(0), null, 99,
+                "Scrum, \"the\" Basics", 789, "j.doe", "John", "Doe", "FOO");
+
+        assertThat(row.toCsv())
+                .isEqualTo("12,GRANTED,1970-01-01T00:00:00Z,,99,\"Scrum, \"\"the\"\" Basics\",789,j.doe,John,Doe,FOO");
+    }
+
+    @Test
+    public void toCsvWithoutOptionalData() {
+        BookingExportDTO row = new BookingExportDTO(1, null, null, null, 2, null, 0, "j.doe", null, null, null);
+
+        assertThat(row.toCsv()).isEqualTo("1,,,,2,,0,j.doe,,,");
+    }
+}
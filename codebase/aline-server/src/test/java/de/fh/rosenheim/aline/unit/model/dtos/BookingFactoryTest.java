@@ -3,6 +3,7 @@ package de.fh.rosenheim.aline.unit.model.dtos;
 import de.fh.rosenheim.aline.model.domain.Booking;
 import de.fh.rosenheim.aline.model.domain.BookingStatus;
 import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.domain.SpendingLedgerEntry;
 import de.fh.rosenheim.aline.model.dtos.booking.BookingDTO;
 import de.fh.rosenheim.aline.model.dtos.booking.BookingFactory;
 import de.fh.rosenheim.aline.model.dtos.booking.BookingSummaryDTO;
@@ -14,7 +15,10 @@ import org.junit.Test;
 
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 
@@ -245,4 +249,101 @@ public class BookingFactoryTest {
         assertThat(dto2018.getPlannedTotalSpending()).isEqualTo(789);
         assertThat(dto2018.getBookings().size()).isEqualTo(2);
     }
+
+    @Test
+    public void generateBookingSummaryDTOsForWaitlistedAndUndatedSeminars() throws ParseException {
+        given(dateUtil.getCurrentDate()).willReturn(sdf.parse("11/7/2019"));
+
+        Seminar undated = new Seminar();
+        undated.setId((long) 1);
+        undated.setCostsPerParticipant(7);
+
+        Seminar future = new Seminar();
+        future.setId((long) 2);
+        future.setDates((Date[]) Arrays.asList(sdf.parse("21/7/2019")).toArray());
+        future.setCostsPerParticipant(11);
+
+        List<BookingSummaryDTO> dtos = bookingFactory.toBookingSummaryDTOs(Arrays.asList(
+                Booking.builder().id((long) 1).status(BookingStatus.REQUESTED).seminar(undated).build(),
+                Booking.builder().id((long) 2).status(BookingStatus.WAITLISTED).seminar(future).build(),
+                Booking.builder().id((long) 3).status(BookingStatus.GRANTED).seminar(future).build()));
+
+        assertThat(dtos.size()).isEqualTo(2);
+
+        BookingSummaryDTO currentYear = dtos.get(0);
+        assertThat(currentYear.getYear()).isEqualTo(Calendar.getInstance().get(Calendar.YEAR));
+        assertThat(currentYear.getPlannedTotalSpending()).isEqualTo(7);
+        assertThat(currentYear.getBookings().size()).isEqualTo(1);
+
+        BookingSummaryDTO dto2019 = dtos.get(1);
+        assertThat(dto2019.getYear()).isEqualTo(2019);
+        assertThat(dto2019.getPlannedTotalSpending()).isEqualTo(11);
+        assertThat(dto2019.getPlannedAdditionalSpending()).isEqualTo(11);
+        assertThat(dto2019.getGrantedSpending()).isEqualTo(11);
+        assertThat(dto2019.getIssuedSpending()).isEqualTo(0);
+        assertThat(dto2019.getBookings().size()).isEqualTo(2);
+    }
+
+    @Test
+    public void spendingLedgerMatchesBookingSummaries() throws ParseException {
+        given(dateUtil.getCurrentDate()).willReturn(sdf.parse("11/7/2019"));
+
+        Seminar past = new Seminar();
+        past.setId((long) 1);
+        past.setDates((Date[]) Arrays.asList(sdf.parse("1/7/2019")).toArray());
+        past.setCostsPerParticipant(3);
+
+        Seminar future = new Seminar();
+        future.setId((long) 2);
+        future.setDates((Date[]) Arrays.asList(sdf.parse("21/7/2019"), sdf.parse("28/7/2019")).toArray());
+        future.setCostsPerParticipant(5);
+
+        Seminar old = new Seminar();
+        old.setId((long) 3);
+        old.setDates((Date[]) Arrays.asList(sdf.parse("12/1/2018")).toArray());
+        old.setCostsPerParticipant(789);
+
+        Booking booking = Booking.builder().id((long) 1).status(BookingStatus.REQUESTED).seminar(future).build();
+        List<Booking> bookings = Arrays.asList(
+                Booking.builder().id((long) 2).status(BookingStatus.GRANTED).seminar(past).build(),
+                Booking.builder().id((long) 3).status(BookingStatus.GRANTED).seminar(old).build(),
+                booking);
+
+        List<SpendingLedgerEntry> ledger = bookingFactory.toSpendingLedger("John", bookings);
+        assertThat(ledger).extracting("year").containsOnly(2019, 2018);
+        assertThat(bookingFactory.toSpendingSummaryDTOs(ledger)).extracting("plannedTotalSpending")
+                .containsExactly(8L, 789L);
+        SpendingLedgerEntry entry2019 = ledger.stream().filter(entry -> entry.getYear() == 2019).findFirst().get();
+        assertThat(entry2019.getUsername()).isEqualTo("John");
+        assertThat(entry2019.getBookingCount()).isEqualTo(2);
+        assertThat(entry2019.getValidUntil()).isEqualTo(sdf.parse("28/7/2019"));
+        assertThat(entry2019.isExpired(sdf.parse("28/7/2019"))).isFalse();
+        assertThat(entry2019.isExpired(sdf.parse("29/7/2019"))).isTrue();
+
+        // Incremental updates lead to the same sums as a summary of the changed bookings
+        List<SpendingLedgerEntry> changes = new ArrayList<>();
+        bookingFactory.addToSpendingLedger(changes, "John", future, BookingStatus.REQUESTED, -1);
+        bookingFactory.addToSpendingLedger(changes, "John", future, BookingStatus.GRANTED, 1);
+        assertThat(changes).extracting("year").containsExactly(2019);
+        entry2019.add(changes.get(0));
+        booking.setStatus(BookingStatus.GRANTED);
+        List<BookingSummaryDTO> fromLedger = bookingFactory.toBookingSummaryDTOs(bookings, ledger);
+        assertThat(fromLedger).isEqualTo(bookingFactory.toBookingSummaryDTOs(bookings));
+        assertThat(fromLedger.get(0).getGrantedSpending()).isEqualTo(8);
+        assertThat(fromLedger.get(0).getBookings().size()).isEqualTo(2);
+
+        // The sums of all years, but only the bookings of a single year
+        List<BookingSummaryDTO> ofYear = bookingFactory.toBookingSummaryDTOs(
+                Collections.singletonList(bookings.get(1)), ledger, 2018);
+        assertThat(ofYear).extracting("year").containsExactly(2019, 2018);
+        assertThat(ofYear.get(0).getBookings()).isEmpty();
+        assertThat(ofYear.get(0).getGrantedSpending()).isEqualTo(8);
+        assertThat(ofYear.get(1).getBookings()).extracting("id").containsExactly(3L);
+        assertThat(ofYear.get(1).getIssuedSpending()).isEqualTo(789);
+
+        // Entries for other years are added to the changes
+        bookingFactory.addToSpendingLedger(changes, "John", old, BookingStatus.DENIED, 1);
+        assertThat(changes).extracting("year").containsExactly(2019, 2018);
+        assertThat(changes.get(1).getBookingCount()).isEqualTo(1);
+    }
 }
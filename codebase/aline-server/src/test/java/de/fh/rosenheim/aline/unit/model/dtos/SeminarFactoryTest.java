@@ -9,6 +9,8 @@ import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFactory;
 import org.junit.Test;
 import org.springframework.stereotype.Component;
 
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -58,6 +60,7 @@ public class SeminarFactoryTest {
 
         seminar.setId((long) 12);
         seminar.setBookings(bookings);
+        seminar.setActiveBookingCount(2);
         seminar.setName("name");
         seminar.setDescription("description");
         seminar.setAgenda("agenda");
@@ -152,4 +155,67 @@ public class SeminarFactoryTest {
         assertThat(seminar.getCycle()).isEqualTo("cycle");
         assertThat(seminar.getDates()).hasSize(1).contains(date1);
     }
+
+    @Test
+    public void updateSeminarSetsFirstAndLastDate() throws ParseException {
+        SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+        Seminar seminar = new Seminar();
+        SeminarBasicsDTO basicsDTO = new SeminarBasicsDTO();
+        basicsDTO.setDates(new Date[]{sdf.parse("12/1/2017"), sdf.parse("12/1/2015"), sdf.parse("12/1/2018")});
+
+        SeminarFactory.updateSeminar(seminar, basicsDTO);
+        assertThat(seminar.getFirstDate()).isEqualTo(sdf.parse("12/1/2015"));
+        assertThat(seminar.getLastDate()).isEqualTo(sdf.parse("12/1/2018"));
+
+        basicsDTO.setDates(null);
+        SeminarFactory.updateSeminar(seminar, basicsDTO);
+        assertThat(seminar.getFirstDate()).isNull();
+        assertThat(seminar.getLastDate()).isNull();
+    }
+
+    @Test
+    public void toSeminarSummaryDTOLeavesOutTexts() {
+        Seminar seminar = new Seminar();
+        seminar.setId((long) 42);
+        seminar.setName("Dat Seminar");
+        seminar.setDescription("A very long description");
+        seminar.setAgenda("A very long agenda");
+
+        SeminarDTO dto = SeminarFactory.toSeminarSummaryDTO(seminar);
+
+        assertThat(dto.getId()).isEqualTo(42);
+        assertThat(dto.getName()).isEqualTo("Dat Seminar");
+        assertThat(dto.getDescription()).isNull();
+        assertThat(dto.getAgenda()).isNull();
+        assertThat(SeminarFactory.toSeminarDTO(seminar).getDescription()).isEqualTo("A very long description");
+        assertThat(SeminarFactory.toSeminarDTO(seminar).getAgenda()).isEqualTo("A very long agenda");
+    }
+
+    @Test
+    public void seminarWithoutTexts() {
+        Seminar seminar = new Seminar();
+        seminar.setId((long) 42);
+
+        assertThat(seminar.getDescription()).isNull();
+        assertThat(seminar.getAgenda()).isNull();
+        assertThat(SeminarFactory.toSeminarDTO(seminar).getDescription()).isNull();
+    }
+
+    @Test
+    public void updateSeminarTextsMarksSeminarUpdated() {
+        Date lastUpdate = new Date(0);
+        Seminar seminar = new Seminar();
+        seminar.setDescription("old description");
+        seminar.setUpdated(lastUpdate);
+
+        SeminarBasicsDTO basicsDTO = new SeminarBasicsDTO();
+        basicsDTO.setDescription("old description");
+        SeminarFactory.updateSeminar(seminar, basicsDTO);
+        assertThat(seminar.getUpdated()).isEqualTo(lastUpdate);
+
+        basicsDTO.setDescription("new description");
+        SeminarFactory.updateSeminar(seminar, basicsDTO);
+        assertThat(seminar.getDescription()).isEqualTo("new description");
+        assertThat(seminar.getUpdated()).isAfter(lastUpdate);
+    }
 }
@@ -43,4 +43,24 @@ public class UserFactoryTest {
                 .contains("TOP_DOG")
                 .contains("DIVISION_HEAD");
     }
+
+    @Test
+    public void toUserBasicsDTOTest() {
+        User user = User.builder()
+                .username("Danny")
+                .authorities("TOP_DOG,DIVISION_HEAD")
+                .division("FOO")
+                .firstName("John")
+                .lastName("Doe")
+                .build();
+        UserDTO dto = userFactory.toUserBasicsDTO(user);
+
+        assertThat(dto.getUserName()).isEqualTo("Danny");
+        assertThat(dto.getFirstName()).isEqualTo("John");
+        assertThat(dto.getLastName()).isEqualTo("Doe");
+        assertThat(dto.getDivision()).isEqualTo("FOO");
+        assertThat(dto.getAuthorities()).isNull();
+        assertThat(dto.getBookings()).isNull();
+        assertThat(userFactory.toUserBasicsDTO(null)).isNull();
+    }
 }
@@ -0,0 +1,64 @@
+package de.fh.rosenheim.aline.unit.model.dtos;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import de.fh.rosenheim.aline.model.dtos.json.view.View;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarDTO;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class ViewTest {
+
+    private ObjectMapper objectMapper;
+    private SeminarDTO seminar;
+
+    @Before
+    public void setUp() {
+        // Same as the object mapper configured by Spring Boot
+        objectMapper = new ObjectMapper().disable(MapperFeature.DEFAULT_VIEW_INCLUSION);
+        seminar = new SeminarDTO();
+        seminar.setId(42);
+        seminar.setName("Dat Seminar");
+        seminar.setDescription("A very long description");
+        seminar.setAgenda("A very long agenda");
+        seminar.setActiveBookings(3);
+    }
+
+    @Test
+    public void seminarListViewLeavesOutLongTexts() throws IOException {
+        JsonNode json = serialize(View.SeminarListView.class);
+
+        assertThat(json.get("id").asLong()).isEqualTo(42);
+        assertThat(json.get("name").asText()).isEqualTo("Dat Seminar");
+        assertThat(json.get("activeBookings").asInt()).isEqualTo(3);
+        assertThat(json.has("description")).isFalse();
+        assertThat(json.has("agenda")).isFalse();
+    }
+
+    @Test
+    public void seminarDetailsViewContainsLongTexts() throws IOException {
+        JsonNode json = serialize(View.SeminarDetailsView.class);
+
+        assertThat(json.get("id").asLong()).isEqualTo(42);
+        assertThat(json.get("name").asText()).isEqualTo("Dat Seminar");
+        assertThat(json.get("description").asText()).isEqualTo("A very long description");
+        assertThat(json.get("agenda").asText()).isEqualTo("A very long agenda");
+    }
+
+    @Test
+    public void seminarIdViewOnlyContainsId() throws IOException {
+        JsonNode json = serialize(View.SeminarIdView.class);
+
+        assertThat(json.size()).isEqualTo(1);
+        assertThat(json.get("id").asLong()).isEqualTo(42);
+    }
+
+    private JsonNode serialize(Class<?> view) throws IOException {
+        return objectMapper.readTree(objectMapper.writerWithView(view).writeValueAsString(seminar));
+    }
+}
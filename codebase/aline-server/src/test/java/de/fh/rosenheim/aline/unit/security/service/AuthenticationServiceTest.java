@@ -10,6 +10,7 @@ import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
 import de.fh.rosenheim.aline.model.security.SecurityUser;
 import de.fh.rosenheim.aline.repository.UserRepository;
 import de.fh.rosenheim.aline.security.service.AuthenticationService;
+import de.fh.rosenheim.aline.security.service.CachedUserDetailsService;
 import de.fh.rosenheim.aline.security.utils.Authorities;
 import de.fh.rosenheim.aline.security.utils.TokenUtils;
 import de.fh.rosenheim.aline.service.UserService;
@@ -21,7 +22,6 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.util.Arrays;
@@ -39,7 +39,7 @@ public class AuthenticationServiceTest {
 
     private UserRepository userRepository;
     private AuthenticationManager authenticationManager;
-    private UserDetailsService userDetailsService;
+    private CachedUserDetailsService userDetailsService;
     private TokenUtils tokenUtils;
     private UserService userService;
     private UserFactory userFactory;
@@ -51,7 +51,7 @@ public class AuthenticationServiceTest {
     public void setUp() {
         userRepository = mock(UserRepository.class);
         authenticationManager = mock(AuthenticationManager.class);
-        userDetailsService = mock(UserDetailsService.class);
+        userDetailsService = mock(CachedUserDetailsService.class);
         tokenUtils = mock(TokenUtils.class);
         userService = mock(UserService.class);
         userFactory = mock(UserFactory.class);
@@ -132,6 +132,7 @@ public class AuthenticationServiceTest {
         authenticationService.logoutUser("foobarfoobarfoobarfoobar");
         assertThat(user.getLastLogout()).isNotNull();
         verify(userRepository, times(1)).save(any(User.class));
+        verify(userDetailsService).evict(any());
     }
 
     private AuthenticationRequestDTO generateRequest() {
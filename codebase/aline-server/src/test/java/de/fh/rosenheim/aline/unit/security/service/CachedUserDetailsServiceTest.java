@@ -0,0 +1,70 @@
+package de.fh.rosenheim.aline.unit.security.service;
+
+import de.fh.rosenheim.aline.model.security.SecurityUser;
+import de.fh.rosenheim.aline.security.service.CachedUserDetailsService;
+import de.fh.rosenheim.aline.security.service.UserDetailsServiceImpl;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CachedUserDetailsServiceTest {
+
+    private static final String USERNAME = "JohnDoe";
+    private UserDetailsServiceImpl delegate;
+    private CachedUserDetailsService userDetailsService;
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Before
+    public void setUp() {
+        delegate = mock(UserDetailsServiceImpl.class);
+        userDetailsService = new CachedUserDetailsService(delegate);
+    }
+
+    @Test
+    public void loadUserOnlyOnce() {
+        SecurityUser user = new SecurityUser(USERNAME, null, null, null, null, null);
+        given(delegate.loadUserByUsername(USERNAME)).willReturn(user);
+
+        assertThat(userDetailsService.loadUserByUsername(USERNAME)).isEqualTo(user);
+        assertThat(userDetailsService.loadUserByUsername(USERNAME)).isEqualTo(user);
+        verify(delegate, times(1)).loadUserByUsername(USERNAME);
+        assertThat(getMetric("hit")).isEqualTo(1L);
+        assertThat(getMetric("miss")).isEqualTo(1L);
+    }
+
+    @Test
+    public void loadUserAgainAfterEviction() {
+        given(delegate.loadUserByUsername(USERNAME))
+                .willReturn(new SecurityUser(USERNAME, null, null, null, null, null));
+
+        userDetailsService.loadUserByUsername(USERNAME);
+        userDetailsService.evict(USERNAME);
+        userDetailsService.loadUserByUsername(USERNAME);
+        verify(delegate, times(2)).loadUserByUsername(USERNAME);
+    }
+
+    @Test
+    public void loadUnknownUser() {
+        exception.expect(UsernameNotFoundException.class);
+        given(delegate.loadUserByUsername(USERNAME)).willThrow(new UsernameNotFoundException(USERNAME));
+        userDetailsService.loadUserByUsername(USERNAME);
+    }
+
+    private Object getMetric(String name) {
+        return userDetailsService.metrics().stream()
+                .filter(metric -> metric.getName().endsWith("." + name))
+                .map(Metric::getValue)
+                .findAny().orElse(null);
+    }
+}
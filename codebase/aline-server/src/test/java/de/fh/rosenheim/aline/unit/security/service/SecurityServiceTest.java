@@ -13,6 +13,7 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.util.Arrays;
 import java.util.Collection;
@@ -80,6 +81,24 @@ public class SecurityServiceTest {
         assertThat(securityService.canAccessUserData(principal, user)).isFalse();
     }
 
+    @Test
+    public void canAccessDataOfUserBeforeLoadingIt() {
+        SecurityUser head = new SecurityUser("THE HEAD", null, DIVISION, null, null, generateAuthorities(Authorities.DIVISION_HEAD));
+        SecurityUser employee = new SecurityUser("Dude", null, DIVISION, null, null, generateAuthorities(Authorities.EMPLOYEE));
+        given(userDetailsService.loadUserByUsername(USERNAME)).willReturn(securityUser);
+        given(userDetailsService.loadUserByUsername("Other")).willReturn(
+                new SecurityUser("Other", null, "BAR", null, null, generateAuthorities(Authorities.EMPLOYEE)));
+        given(userDetailsService.loadUserByUsername("Nobody")).willThrow(new UsernameNotFoundException("Nobody"));
+
+        assertThat(securityService.canAccessDataOfUser(head, USERNAME)).isTrue();
+        assertThat(securityService.canAccessDataOfUser(head, "Other")).isFalse();
+        assertThat(securityService.canAccessDataOfUser(head, "Nobody")).isFalse();
+        assertThat(securityService.canAccessDataOfUser(employee, null)).isTrue();
+        assertThat(securityService.canAccessDataOfUser(employee, "Dude")).isTrue();
+        assertThat(securityService.canAccessDataOfUser(employee, USERNAME)).isFalse();
+        assertThat(securityService.canAccessDataOfUser(null, null)).isFalse();
+    }
+
     @Test
     public void canBookForSelf() {
         SecurityUser principal = new SecurityUser(USERNAME, null, DIVISION, null, null, generateAuthorities(Authorities.EMPLOYEE));
@@ -177,6 +196,14 @@ public class SecurityServiceTest {
         assertThat(securityService.canGetDivisionUsers(currentUser, "SOMETHING")).isFalse();
     }
 
+    @Test
+    public void isFrontOfficeAfterChangedAuthorities() {
+        SecurityUser principal = new SecurityUser("FRONT", null, null, null, null, generateAuthorities(Authorities.EMPLOYEE, "UNKNOWN"));
+        assertThat(securityService.isFrontOffice(principal)).isFalse();
+        principal.setAuthorities(generateAuthorities(Authorities.EMPLOYEE, Authorities.FRONT_OFFICE));
+        assertThat(securityService.isFrontOffice(principal)).isTrue();
+    }
+
     private Collection<SimpleGrantedAuthority> generateAuthorities(String... authorityNames) {
         Collection<SimpleGrantedAuthority> authorities = Arrays.stream(authorityNames)
                 .map(SimpleGrantedAuthority::new)
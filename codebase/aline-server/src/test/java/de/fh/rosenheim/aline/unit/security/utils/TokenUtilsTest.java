@@ -1,8 +1,10 @@
 package de.fh.rosenheim.aline.unit.security.utils;
 
+import com.google.common.cache.Cache;
 import de.fh.rosenheim.aline.model.security.SecurityUser;
 import de.fh.rosenheim.aline.security.utils.TokenUtils;
 import de.fh.rosenheim.aline.util.DateUtil;
+import io.jsonwebtoken.Claims;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.security.core.userdetails.UserDetails;
@@ -11,6 +13,8 @@ import org.springframework.test.util.ReflectionTestUtils;
 import java.util.Date;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
 
 public class TokenUtilsTest {
 
@@ -78,6 +82,41 @@ public class TokenUtilsTest {
         assertThat(areDatesWithinMargin(tokenUtils.getCreatedDateFromToken(refreshedToken), new Date())).isTrue();
     }
 
+    @Test
+    public void validateTamperedToken() {
+        SecurityUser securityUser = new SecurityUser("John", null, null, null, null, null);
+        String token = tokenUtils.generateToken(userDetails);
+        assertThat(tokenUtils.isTokenValid(token + "x", securityUser)).isFalse();
+        assertThat(tokenUtils.getUsernameFromToken(token + "x")).isNull();
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rejectExpiredTokenFromCache() {
+        String token = tokenUtils.generateToken(userDetails);
+        assertThat(tokenUtils.getUsernameFromToken(token)).isEqualTo("John");
+        Cache<String, Claims> verifiedClaims = (Cache<String, Claims>) ReflectionTestUtils.getField(tokenUtils, "verifiedClaims");
+        verifiedClaims.getIfPresent(token).setExpiration(new Date(System.currentTimeMillis() - 1000));
+
+        assertThat(tokenUtils.getUsernameFromToken(token)).isNull();
+        assertThat(verifiedClaims.getIfPresent(token)).isNull();
+    }
+
+    @Test
+    public void refreshTokenKeepsCachedClaimsOfOldToken() {
+        DateUtil clock = mock(DateUtil.class);
+        given(clock.getCurrentDate()).willReturn(new Date(1480000000000L), new Date(1480000060000L));
+        tokenUtils = new TokenUtils(clock);
+        ReflectionTestUtils.setField(tokenUtils, "secret", "foobar123");
+        ReflectionTestUtils.setField(tokenUtils, "expiration", EXPIRATION_IN_SECONDS);
+
+        String token = tokenUtils.generateToken(userDetails);
+        assertThat(tokenUtils.getCreatedDateFromToken(token)).isEqualTo(new Date(1480000000000L));
+        String refreshedToken = tokenUtils.refreshToken(token);
+        assertThat(tokenUtils.getCreatedDateFromToken(refreshedToken)).isEqualTo(new Date(1480000060000L));
+        assertThat(tokenUtils.getCreatedDateFromToken(token)).isEqualTo(new Date(1480000000000L));
+    }
+
     private boolean areDatesWithinMargin(Date one, Date two) {
         return Math.abs(one.getTime() - two.getTime()) < ERROR_MARGIN_IN_MILLISECONDS;
     }
@@ -4,26 +4,54 @@ import de.fh.rosenheim.aline.model.domain.Booking;
 import de.fh.rosenheim.aline.model.domain.BookingStatus;
 import de.fh.rosenheim.aline.model.domain.Seminar;
 import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingExportDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingStatusResultDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.PendingBookingDTO;
 import de.fh.rosenheim.aline.model.exceptions.BookingException;
 import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
 import de.fh.rosenheim.aline.model.security.SecurityUser;
 import de.fh.rosenheim.aline.repository.BookingRepository;
 import de.fh.rosenheim.aline.security.service.SecurityService;
 import de.fh.rosenheim.aline.service.BookingService;
+import de.fh.rosenheim.aline.service.DivisionRollupService;
 import de.fh.rosenheim.aline.service.SeminarService;
+import de.fh.rosenheim.aline.service.SpendingLedgerService;
 import de.fh.rosenheim.aline.service.UserService;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.ExpectedException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.security.access.AccessDeniedException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.assertj.core.api.Java6Assertions.fail;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 public class BookingServiceTest {
 
@@ -33,6 +61,8 @@ public class BookingServiceTest {
     private SecurityService securityService;
     private SeminarService seminarService;
     private UserService userService;
+    private SpendingLedgerService spendingLedgerService;
+    private DivisionRollupService divisionRollupService;
     private BookingService bookingService;
 
     @Rule
@@ -44,7 +74,10 @@ public class BookingServiceTest {
         securityService = mock(SecurityService.class);
         seminarService = mock(SeminarService.class);
         userService = mock(UserService.class);
-        bookingService = new BookingService(bookingRepository, securityService, seminarService, userService);
+        spendingLedgerService = mock(SpendingLedgerService.class);
+        divisionRollupService = mock(DivisionRollupService.class);
+        bookingService = new BookingService(bookingRepository, securityService, seminarService, userService,
+                spendingLedgerService, divisionRollupService, mock(PlatformTransactionManager.class));
     }
 
     @Before
@@ -74,8 +107,9 @@ public class BookingServiceTest {
         exception.expect(BookingException.class);
 
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(false);
-        given(seminarService.getSeminar(1)).willReturn(seminar);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
 
         bookingService.book((long) 1, "Foo");
     }
@@ -84,7 +118,7 @@ public class BookingServiceTest {
     public void bookNonExistingSeminar() throws NoObjectForIdException, BookingException {
         exception.expect(BookingException.class);
 
-        given(seminarService.getSeminar(1)).willThrow(new NoObjectForIdException(Seminar.class, 1));
+        given(seminarService.getSeminarForUpdate(1)).willThrow(new NoObjectForIdException(Seminar.class, 1));
 
         bookingService.book((long) 1, "Foo");
     }
@@ -94,8 +128,9 @@ public class BookingServiceTest {
         exception.expect(BookingException.class);
 
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
-        given(seminarService.getSeminar(1)).willReturn(seminar);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
         given(userService.getUserByName("Foo")).willThrow(new NoObjectForIdException(User.class, "Foo"));
 
         bookingService.book((long) 1, "Foo");
@@ -106,12 +141,14 @@ public class BookingServiceTest {
         exception.expect(BookingException.class);
 
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
-        given(seminarService.getSeminar(1)).willReturn(seminar);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
 
         User user = new User();
         user.setUsername(USERNAME);
-        user.addBooking(Booking.builder().user(user).seminar(seminar).status(BookingStatus.REQUESTED).build());
+        given(bookingRepository.findByUserUsernameAndSeminarId(USERNAME, 1))
+                .willReturn(Booking.builder().user(user).seminar(seminar).status(BookingStatus.REQUESTED).build());
         given(userService.getUserByName(USERNAME)).willReturn(user);
 
         bookingService.book((long) 1, USERNAME);
@@ -120,26 +157,162 @@ public class BookingServiceTest {
     @Test
     public void bookTwicePreviousStatusDenied() throws NoObjectForIdException, BookingException {
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
         seminar.setMaximumParticipants(10);
-        given(seminarService.getSeminar(1)).willReturn(seminar);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
 
         User user = new User();
         user.setUsername(USERNAME);
         Booking previousBooking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.DENIED).build();
-        user.addBooking(previousBooking);
+        given(bookingRepository.findByUserUsernameAndSeminarId(USERNAME, 1)).willReturn(previousBooking);
         given(userService.getUserByName(USERNAME)).willReturn(user);
 
         assertThat(bookingService.book((long) 1, USERNAME)).isEqualTo(previousBooking);
         assertThat(previousBooking.getStatus()).isEqualTo(BookingStatus.REQUESTED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void bookConcurrentDuplicate() throws NoObjectForIdException, BookingException {
+        exception.expect(BookingException.class);
+        exception.expectMessage("already exists");
+
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(10);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        given(userService.getUserByName(USERNAME)).willReturn(user);
+        given(bookingRepository.save(any(Booking.class))).willThrow(new DuplicateKeyException("UK_BOOKINGS_USER_SEMINAR"));
+
+        bookingService.book((long) 1, USERNAME);
+    }
+
+    @Test
+    public void bookConcurrentDuplicateInTurkishLocale() throws NoObjectForIdException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(10);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        given(userService.getUserByName(USERNAME)).willReturn(user);
+        given(bookingRepository.save(any(Booking.class))).willThrow(new DataIntegrityViolationException(
+                "could not execute statement",
+                new ConstraintViolationException("Unique index", null, "uk_bookings_user_seminar_index_0")));
+
+        Locale defaultLocale = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            bookingService.book((long) 1, USERNAME);
+            fail("The duplicate booking was not rejected");
+        } catch (BookingException e) {
+            assertThat(e.getMessage()).contains("already exists");
+        } finally {
+            Locale.setDefault(defaultLocale);
+        }
+    }
+
+    @Test
+    public void bookRethrowsOtherConstraintViolations() throws NoObjectForIdException, BookingException {
+        exception.expect(DataIntegrityViolationException.class);
+
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(10);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        given(userService.getUserByName(USERNAME)).willReturn(user);
+        given(bookingRepository.save(any(Booking.class))).willThrow(new DataIntegrityViolationException(
+                "could not execute statement", new ConstraintViolationException("NULL not allowed", null, null)));
+
+        bookingService.book((long) 1, USERNAME);
+    }
+
+    @Test
+    public void bookRetriesAfterLockConflict() throws NoObjectForIdException, BookingException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(10);
+        given(seminarService.getSeminarForUpdate(1))
+                .willThrow(new PessimisticLockingFailureException("Timeout"))
+                .willReturn(seminar);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        given(userService.getUserByName(USERNAME)).willReturn(user);
+
+        assertThat(bookingService.book((long) 1, USERNAME).getStatus()).isEqualTo(BookingStatus.REQUESTED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void bookGivesUpAfterRepeatedLockConflicts() throws NoObjectForIdException, BookingException {
+        exception.expect(BookingException.class);
+
+        given(seminarService.getSeminarForUpdate(1)).willThrow(new PessimisticLockingFailureException("Timeout"));
+
+        try {
+            bookingService.book((long) 1, USERNAME);
+        } finally {
+            verify(seminarService, times(5)).getSeminarForUpdate(1);
+        }
+    }
+
+    @Test
+    public void bookFullyBookedSeminar() throws NoObjectForIdException, BookingException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(10);
+        seminar.setActiveBookingCount(10);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        given(userService.getUserByName(USERNAME)).willReturn(user);
+        given(securityService.isTopDog(USERNAME)).willReturn(true);
+
+        assertThat(bookingService.book((long) 1, USERNAME).getStatus()).isEqualTo(BookingStatus.WAITLISTED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(10);
+    }
+
+    @Test
+    public void bookSeminarAlreadyWaitlisted() throws NoObjectForIdException, BookingException {
+        exception.expect(BookingException.class);
+
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setBookable(true);
+        seminar.setMaximumParticipants(10);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        given(bookingRepository.findByUserUsernameAndSeminarId(USERNAME, 1))
+                .willReturn(Booking.builder().user(user).seminar(seminar).status(BookingStatus.WAITLISTED).build());
+        given(userService.getUserByName(USERNAME)).willReturn(user);
+
+        bookingService.book((long) 1, USERNAME);
     }
 
     @Test
     public void bookingSeminar() throws NoObjectForIdException, BookingException {
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
         seminar.setMaximumParticipants(10);
-        given(seminarService.getSeminar(1)).willReturn(seminar);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
 
         User user = new User();
         user.setUsername(USERNAME);
@@ -149,14 +322,16 @@ public class BookingServiceTest {
         assertThat(newBooking.getStatus()).isEqualTo(BookingStatus.REQUESTED);
         assertThat(newBooking.getSeminar()).isEqualTo(seminar);
         assertThat(newBooking.getUser()).isEqualTo(user);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
     }
 
     @Test
     public void bookingSeminarAsFrontOffice() throws NoObjectForIdException, BookingException {
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
         seminar.setMaximumParticipants(10);
-        given(seminarService.getSeminar(1)).willReturn(seminar);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
 
         User user = new User();
         user.setUsername(USERNAME);
@@ -173,9 +348,10 @@ public class BookingServiceTest {
     @Test
     public void bookingSeminarForTopDog() throws NoObjectForIdException, BookingException {
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
         seminar.setMaximumParticipants(10);
-        given(seminarService.getSeminar(1)).willReturn(seminar);
+        given(seminarService.getSeminarForUpdate(1)).willReturn(seminar);
 
         User user = new User();
         user.setUsername(USERNAME);
@@ -185,6 +361,7 @@ public class BookingServiceTest {
 
         Booking newBooking = bookingService.book((long) 1, USERNAME);
         assertThat(newBooking.getStatus()).isEqualTo(BookingStatus.GRANTED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
         assertThat(newBooking.getSeminar()).isEqualTo(seminar);
         assertThat(newBooking.getUser()).isEqualTo(user);
     }
@@ -193,6 +370,7 @@ public class BookingServiceTest {
     public void deleteBookingWithInsufficientPermission() throws NoObjectForIdException {
         exception.expect(AccessDeniedException.class);
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
 
         User user = new User();
@@ -207,6 +385,7 @@ public class BookingServiceTest {
     @Test
     public void deleteBooking() throws NoObjectForIdException {
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
 
         User user = new User();
@@ -216,13 +395,245 @@ public class BookingServiceTest {
         given(bookingRepository.findOne((long) 1)).willReturn(booking);
         given(securityService.canCurrentUserDeleteBooking(booking)).willReturn(true);
         bookingService.deleteBooking(1);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(0);
+        verify(spendingLedgerService).bookingChanged(booking, BookingStatus.DENIED, null);
+        verify(divisionRollupService).bookingChanged(booking, BookingStatus.DENIED, null);
+    }
+
+    @Test
+    public void grantBookingLocksSeminar() throws NoObjectForIdException, BookingException {
+        Seminar seminar = new Seminar();
+        seminar.setId(2L);
+        seminar.setMaximumParticipants(1);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+
+        Booking booking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.DENIED).build();
+        given(bookingRepository.findSeminarIdById(1)).willReturn(2L);
+        given(bookingRepository.findOne((long) 1)).willReturn(booking);
+        given(securityService.canCurrentUserChangeBookingStatus(booking)).willReturn(true);
+        given(bookingRepository.save(booking)).willReturn(booking);
+
+        bookingService.grantBooking(1);
+        verify(seminarService).getSeminarForUpdate(2L);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
     }
 
     @Test
-    public void grantBookingWithInsufficientPermission() throws NoObjectForIdException {
+    public void deleteActiveBooking() throws NoObjectForIdException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setBookable(true);
+        seminar.setActiveBookingCount(3);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+
+        Booking booking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.GRANTED).build();
+        given(bookingRepository.findOne((long) 1)).willReturn(booking);
+        given(securityService.canCurrentUserDeleteBooking(booking)).willReturn(true);
+        bookingService.deleteBooking(1);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void changeBookingStatusReportsEveryBooking() throws BookingException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(2);
+        User user = new User();
+        user.setUsername(USERNAME);
+        Booking allowed = Booking.builder().id(1L).user(user).seminar(seminar).status(BookingStatus.REQUESTED).build();
+        Booking forbidden = Booking.builder().id(2L).user(user).seminar(seminar).status(BookingStatus.REQUESTED).build();
+        given(bookingRepository.findAll(any(Iterable.class))).willReturn(Arrays.asList(forbidden, allowed));
+        given(bookingRepository.findSeminarIdsByIdIn(any())).willReturn(Collections.singletonList(1L));
+        given(securityService.getCurrentUser()).willReturn(securityUser);
+        given(securityService.canChangeBookingStatus(securityUser, allowed)).willReturn(true);
+
+        List<BookingStatusResultDTO> results =
+                bookingService.changeBookingStatus(Arrays.asList(1L, 2L, 3L, 1L), BookingStatus.GRANTED);
+
+        assertThat(results).extracting("id").containsExactly(1L, 2L, 3L);
+        assertThat(results).extracting("status")
+                .containsExactly(BookingStatus.GRANTED, null, null);
+        assertThat(results.get(0).getError()).isNull();
+        assertThat(results.get(1).getError()).isNotNull();
+        assertThat(results.get(2).getError()).isNotNull();
+        assertThat(allowed.getStatus()).isEqualTo(BookingStatus.GRANTED);
+        assertThat(forbidden.getStatus()).isEqualTo(BookingStatus.REQUESTED);
+        verify(seminarService).getSeminarsForUpdate(Collections.singletonList(1L));
+        verify(securityService, times(1)).getCurrentUser();
+        verify(bookingRepository).save(Collections.singletonList(allowed));
+    }
+
+    @Test
+    public void changeBookingStatusGrantsLikeASingleGrant() throws BookingException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(2);
+        seminar.setActiveBookingCount(1);
+        User user = new User();
+        user.setUsername(USERNAME);
+        Booking requested = Booking.builder().id(1L).user(user).seminar(seminar).status(BookingStatus.REQUESTED).build();
+        Booking waitlisted = Booking.builder().id(2L).user(user).seminar(seminar).status(BookingStatus.WAITLISTED).build();
+        Booking denied = Booking.builder().id(3L).user(user).seminar(seminar).status(BookingStatus.DENIED).build();
+        Booking deniedWithoutSeat = Booking.builder().id(4L).user(user).seminar(seminar).status(BookingStatus.DENIED).build();
+        given(bookingRepository.findAll(any(Iterable.class)))
+                .willReturn(Arrays.asList(requested, waitlisted, denied, deniedWithoutSeat));
+        given(securityService.getCurrentUser()).willReturn(securityUser);
+        given(securityService.canChangeBookingStatus(any(), any())).willReturn(true);
+
+        List<BookingStatusResultDTO> results =
+                bookingService.changeBookingStatus(Arrays.asList(1L, 2L, null, 3L, 4L), BookingStatus.GRANTED);
+
+        assertThat(results).extracting("id").containsExactly(1L, 2L, null, 3L, 4L);
+        assertThat(results).extracting("status").containsExactly(
+                BookingStatus.GRANTED, BookingStatus.WAITLISTED, null, BookingStatus.GRANTED, BookingStatus.DENIED);
+        assertThat(results.get(0).getError()).isNull();
+        assertThat(results.get(1).getError()).isNotNull();
+        assertThat(results.get(2).getError()).isNotNull();
+        assertThat(results.get(3).getError()).isNull();
+        assertThat(results.get(4).getError()).isNotNull();
+        assertThat(waitlisted.getStatus()).isEqualTo(BookingStatus.WAITLISTED);
+        assertThat(deniedWithoutSeat.getStatus()).isEqualTo(BookingStatus.DENIED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(2);
+        verify(bookingRepository).findAll(new LinkedHashSet<>(Arrays.asList(1L, 2L, 3L, 4L)));
+        verify(bookingRepository).save(Arrays.asList(requested, denied));
+    }
+
+    @Test
+    public void denyingBookingsPromotesWaitlistedBookingsOnce() throws BookingException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(2);
+        seminar.setActiveBookingCount(2);
+        User user = new User();
+        user.setUsername(USERNAME);
+        Booking first = Booking.builder().id(1L).user(user).seminar(seminar).status(BookingStatus.GRANTED).build();
+        Booking second = Booking.builder().id(2L).user(user).seminar(seminar).status(BookingStatus.REQUESTED).build();
+        given(bookingRepository.findAll(any(Iterable.class))).willReturn(Arrays.asList(first, second));
+        given(securityService.getCurrentUser()).willReturn(securityUser);
+        given(securityService.canChangeBookingStatus(any(), any())).willReturn(true);
+
+        bookingService.changeBookingStatus(Arrays.asList(1L, 2L), BookingStatus.DENIED);
+
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(0);
+        verify(bookingRepository, times(1))
+                .findFirstBySeminarIdAndStatusOrderByUpdatedAscIdAsc(1, BookingStatus.WAITLISTED);
+    }
+
+    @Test
+    public void changeBookingStatusOnlyGrantsOrDenies() throws BookingException {
+        exception.expect(BookingException.class);
+        bookingService.changeBookingStatus(Collections.singletonList(1L), BookingStatus.WAITLISTED);
+    }
+
+    @Test
+    public void getPendingBookingsOfOwnDivision() throws BookingException {
+        SecurityUser divisionHead = new SecurityUser(USERNAME, null, "FOO", null, null, null);
+        Page<PendingBookingDTO> page = new PageImpl<>(Collections.emptyList());
+        Pageable pageable = new PageRequest(0, 20);
+        given(securityService.getCurrentUser()).willReturn(divisionHead);
+        given(bookingRepository.findByStatusAndUserDivision(BookingStatus.REQUESTED, "FOO", pageable)).willReturn(page);
+        given(bookingRepository.findByStatusAndUserDivision(BookingStatus.REQUESTED, "BAR", pageable)).willReturn(page);
+
+        assertThat(bookingService.getPendingBookings(null, pageable)).isEqualTo(page);
+        assertThat(bookingService.getPendingBookings("", pageable)).isEqualTo(page);
+        assertThat(bookingService.getPendingBookings("BAR", pageable)).isEqualTo(page);
+        verify(bookingRepository, times(2)).findByStatusAndUserDivision(BookingStatus.REQUESTED, "FOO", pageable);
+    }
+
+    @Test
+    public void sortPendingBookingsByUserAndSeminar() throws BookingException {
+        bookingService.getPendingBookings("FOO", new PageRequest(1, 20,
+                new Sort(new Sort.Order(Sort.Direction.DESC, "userName").ignoreCase(), new Sort.Order("firstDate"))));
+
+        verify(bookingRepository).findByStatusAndUserDivision(BookingStatus.REQUESTED, "FOO", new PageRequest(1, 20,
+                new Sort(new Sort.Order(Sort.Direction.DESC, "u.username").ignoreCase(), new Sort.Order("s.firstDate"))));
+    }
+
+    @Test
+    public void sortPendingBookingsOnlyByTheirProperties() throws BookingException {
+        exception.expect(BookingException.class);
+        bookingService.getPendingBookings("FOO", new PageRequest(0, 20, Sort.Direction.ASC, "user.password"));
+    }
+
+    @Test
+    public void deleteBookingPromotesWaitlistedBooking() throws NoObjectForIdException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(2);
+        seminar.setActiveBookingCount(2);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        User waitingUser = new User();
+        waitingUser.setUsername("Jane");
+
+        Booking booking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.REQUESTED).build();
+        Booking waitlisted = Booking.builder().user(waitingUser).seminar(seminar).status(BookingStatus.WAITLISTED).build();
+        given(bookingRepository.findOne((long) 1)).willReturn(booking);
+        given(securityService.canCurrentUserDeleteBooking(booking)).willReturn(true);
+        given(bookingRepository.findFirstBySeminarIdAndStatusOrderByUpdatedAscIdAsc(1, BookingStatus.WAITLISTED))
+                .willReturn(waitlisted);
+
+        bookingService.deleteBooking(1);
+        assertThat(waitlisted.getStatus()).isEqualTo(BookingStatus.REQUESTED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(2);
+        verify(bookingRepository).save(waitlisted);
+        verify(seminarService, times(2)).seminarChanged(seminar);
+    }
+
+    @Test
+    public void denyBookingPromotesWaitlistedTopDog() throws NoObjectForIdException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(1);
+        seminar.setActiveBookingCount(1);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+        User waitingUser = new User();
+        waitingUser.setUsername("Boss");
+
+        Booking booking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.GRANTED).build();
+        Booking waitlisted = Booking.builder().user(waitingUser).seminar(seminar).status(BookingStatus.WAITLISTED).build();
+        given(bookingRepository.findOne((long) 1)).willReturn(booking);
+        given(securityService.canCurrentUserChangeBookingStatus(booking)).willReturn(true);
+        given(securityService.isTopDog("Boss")).willReturn(true);
+        given(bookingRepository.findFirstBySeminarIdAndStatusOrderByUpdatedAscIdAsc(1, BookingStatus.WAITLISTED))
+                .willReturn(waitlisted);
+
+        assertThat(bookingService.denyBooking(1).getStatus()).isEqualTo(BookingStatus.DENIED);
+        assertThat(waitlisted.getStatus()).isEqualTo(BookingStatus.GRANTED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void denyWaitlistedBookingKeepsSeats() throws NoObjectForIdException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(1);
+        seminar.setActiveBookingCount(1);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+
+        Booking booking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.WAITLISTED).build();
+        given(bookingRepository.findOne((long) 1)).willReturn(booking);
+        given(securityService.canCurrentUserChangeBookingStatus(booking)).willReturn(true);
+
+        assertThat(bookingService.denyBooking(1).getStatus()).isEqualTo(BookingStatus.DENIED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void grantBookingWithInsufficientPermission() throws NoObjectForIdException, BookingException {
         exception.expect(AccessDeniedException.class);
 
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
 
         User user = new User();
@@ -235,8 +646,55 @@ public class BookingServiceTest {
     }
 
     @Test
-    public void grantBooking() throws NoObjectForIdException {
+    public void grantWaitlistedBooking() throws NoObjectForIdException, BookingException {
+        exception.expect(BookingException.class);
+
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(2);
+        seminar.setActiveBookingCount(1);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+
+        Booking booking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.WAITLISTED).build();
+        given(bookingRepository.findOne((long) 1)).willReturn(booking);
+        given(securityService.canCurrentUserChangeBookingStatus(booking)).willReturn(true);
+        try {
+            bookingService.grantBooking(1);
+        } finally {
+            assertThat(booking.getStatus()).isEqualTo(BookingStatus.WAITLISTED);
+            assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void grantDeniedBookingOfFullyBookedSeminar() throws NoObjectForIdException, BookingException {
+        exception.expect(BookingException.class);
+
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
+        seminar.setMaximumParticipants(1);
+        seminar.setActiveBookingCount(1);
+
+        User user = new User();
+        user.setUsername(USERNAME);
+
+        Booking booking = Booking.builder().user(user).seminar(seminar).status(BookingStatus.DENIED).build();
+        given(bookingRepository.findOne((long) 1)).willReturn(booking);
+        given(securityService.canCurrentUserChangeBookingStatus(booking)).willReturn(true);
+        try {
+            bookingService.grantBooking(1);
+        } finally {
+            assertThat(booking.getStatus()).isEqualTo(BookingStatus.DENIED);
+            assertThat(seminar.getActiveBookingCount()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void grantBooking() throws NoObjectForIdException, BookingException {
+        Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
 
         User user = new User();
@@ -248,12 +706,17 @@ public class BookingServiceTest {
         given(bookingRepository.save(booking)).willReturn(booking);
 
         assertThat(bookingService.grantBooking(1).getStatus()).isEqualTo(BookingStatus.GRANTED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(0);
+        verify(spendingLedgerService).bookingChanged(booking, BookingStatus.REQUESTED, BookingStatus.GRANTED);
+        verify(divisionRollupService).bookingChanged(booking, BookingStatus.REQUESTED, BookingStatus.GRANTED);
     }
 
     @Test
     public void denyBooking() throws NoObjectForIdException {
         Seminar seminar = new Seminar();
+        seminar.setId(1L);
         seminar.setBookable(true);
+        seminar.setActiveBookingCount(1);
 
         User user = new User();
         user.setUsername(USERNAME);
@@ -264,5 +727,23 @@ public class BookingServiceTest {
         given(bookingRepository.save(booking)).willReturn(booking);
 
         assertThat(bookingService.denyBooking(1).getStatus()).isEqualTo(BookingStatus.DENIED);
+        assertThat(seminar.getActiveBookingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void exportBookings() {
+        BookingExportDTO row1 = new BookingExportDTO(1, BookingStatus.GRANTED, null, null, 2, "Seminar", 100,
+                USERNAME, "John", "Doe", "FOO");
+        BookingExportDTO row2 = new BookingExportDTO(3, BookingStatus.REQUESTED, null, null, 2, "Seminar", 100,
+                "Jane", "Jane", "Doe", "BAR");
+        AtomicBoolean closed = new AtomicBoolean();
+        given(bookingRepository.streamAllForExport())
+                .willReturn(Stream.of(row1, row2).onClose(() -> closed.set(true)));
+
+        List<BookingExportDTO> exported = new ArrayList<>();
+        assertThat(bookingService.exportBookings(exported::add)).isEqualTo(2);
+
+        assertThat(exported).containsExactly(row1, row2);
+        assertThat(closed.get()).isTrue();
     }
 }
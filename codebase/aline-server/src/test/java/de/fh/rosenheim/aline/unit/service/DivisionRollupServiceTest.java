@@ -0,0 +1,263 @@
+package de.fh.rosenheim.aline.unit.service;
+
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.DivisionRollupEntry;
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingFactory;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupCheckDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupDTO;
+import de.fh.rosenheim.aline.model.dtos.booking.DivisionRollupRowDTO;
+import de.fh.rosenheim.aline.model.security.SecurityUser;
+import de.fh.rosenheim.aline.repository.BookingRepository;
+import de.fh.rosenheim.aline.repository.DivisionRollupRepository;
+import de.fh.rosenheim.aline.security.service.SecurityService;
+import de.fh.rosenheim.aline.service.DivisionRollupService;
+import de.fh.rosenheim.aline.util.DateUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class DivisionRollupServiceTest {
+
+    private SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+    private DivisionRollupRepository divisionRollupRepository;
+    private BookingRepository bookingRepository;
+    private SecurityService securityService;
+    private DivisionRollupService divisionRollupService;
+    private Seminar seminar;
+
+    @Before
+    public void createService() throws ParseException {
+        divisionRollupRepository = mock(DivisionRollupRepository.class);
+        bookingRepository = mock(BookingRepository.class);
+        securityService = mock(SecurityService.class);
+        DateUtil dateUtil = mock(DateUtil.class);
+        given(dateUtil.getCurrentDate()).willReturn(sdf.parse("11/7/2019"));
+        divisionRollupService = new DivisionRollupService(divisionRollupRepository, bookingRepository,
+                new BookingFactory(dateUtil), securityService, dateUtil, mock(PlatformTransactionManager.class));
+
+        seminar = new Seminar();
+        seminar.setId((long) 1);
+        seminar.setCategory("Java");
+        seminar.setDates((Date[]) Arrays.asList(sdf.parse("21/7/2019")).toArray());
+        seminar.setCostsPerParticipant(5);
+    }
+
+    @Before
+    public void mockSecurityContext() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken("John", null));
+    }
+
+    @After
+    public void clearTransaction() {
+        SecurityContextHolder.clearContext();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(divisionRollupService);
+    }
+
+    @Test
+    public void rebuildMissingRollupOfOwnDivision() throws ParseException {
+        given(securityService.getCurrentUser()).willReturn(new SecurityUser("John", null, "FOO", null, null, null));
+        given(divisionRollupRepository.findByDivision("FOO")).willReturn(Collections.emptyList());
+        given(bookingRepository.countForDivisionRollup(eq("FOO"), any())).willReturn(Arrays.asList(
+                new DivisionRollupRowDTO("FOO", "Java", sdf.parse("1/7/2019"), 10, BookingStatus.GRANTED, 2),
+                new DivisionRollupRowDTO("FOO", "Java", sdf.parse("21/7/2019"), 5, BookingStatus.REQUESTED, 3),
+                new DivisionRollupRowDTO("FOO", "Java", sdf.parse("21/7/2019"), 5, BookingStatus.GRANTED, 1),
+                new DivisionRollupRowDTO("FOO", null, sdf.parse("12/1/2018"), 7, BookingStatus.GRANTED, 1)));
+
+        List<DivisionRollupDTO> rollup = divisionRollupService.getRollup(null, null);
+
+        verify(divisionRollupRepository).deleteByDivision("FOO");
+        verify(divisionRollupRepository).save(anyListOf(DivisionRollupEntry.class));
+        assertThat(rollup).extracting("year").containsExactly(2019, 2018);
+        DivisionRollupDTO java = rollup.get(0);
+        assertThat(java.getCategory()).isEqualTo("Java");
+        assertThat(java.getRequestedBookingCount()).isEqualTo(3);
+        assertThat(java.getRequestedSpending()).isEqualTo(15);
+        assertThat(java.getGrantedBookingCount()).isEqualTo(3);
+        assertThat(java.getGrantedSpending()).isEqualTo(25);
+        assertThat(java.getIssuedSpending()).isEqualTo(20);
+        assertThat(rollup.get(1).getCategory()).isEqualTo("");
+
+        given(divisionRollupRepository.findByDivision("FOO")).willReturn(Collections.emptyList());
+        assertThat(divisionRollupService.getRollup("FOO", 2018)).extracting("year").containsExactly(2018);
+    }
+
+    @Test
+    public void applyChangesAfterCommitOrderedByDivision() {
+        DivisionRollupEntry foo = entry("FOO");
+        foo.add(BookingStatus.REQUESTED, 5, false, 1);
+        DivisionRollupEntry bar = entry("BAR");
+        given(divisionRollupRepository.findOneForUpdate("FOO", 2019, "Java")).willReturn(foo);
+        given(divisionRollupRepository.findOneForUpdate("BAR", 2019, "Java")).willReturn(bar);
+        given(divisionRollupRepository.countByDivision(anyString())).willReturn(1L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        divisionRollupService.bookingChanged(booking("FOO"), BookingStatus.REQUESTED, BookingStatus.GRANTED);
+        divisionRollupService.bookingChanged(booking("BAR"), null, BookingStatus.REQUESTED);
+        divisionRollupService.bookingChanged(booking("BAR"), BookingStatus.WAITLISTED, BookingStatus.DENIED);
+        beforeCommit();
+        verifyZeroInteractions(divisionRollupRepository);
+
+        afterCommit();
+
+        InOrder inOrder = inOrder(divisionRollupRepository);
+        inOrder.verify(divisionRollupRepository).findOneForUpdate("BAR", 2019, "Java");
+        inOrder.verify(divisionRollupRepository).findOneForUpdate("FOO", 2019, "Java");
+        assertThat(foo.getRequestedBookingCount()).isEqualTo(0);
+        assertThat(foo.getGrantedBookingCount()).isEqualTo(1);
+        assertThat(foo.getGrantedSpending()).isEqualTo(5);
+        assertThat(foo.getValidUntil()).isEqualTo(seminar.getLastDate());
+        assertThat(bar.getRequestedBookingCount()).isEqualTo(1);
+        assertThat(bar.getRequestedSpending()).isEqualTo(5);
+    }
+
+    @Test
+    public void removeRollupWithoutEntryForTheChange() {
+        given(divisionRollupRepository.countByDivision("FOO")).willReturn(1L);
+        given(divisionRollupRepository.findOneForUpdate(anyString(), anyInt(), anyString())).willReturn(null);
+
+        divisionRollupService.bookingChanged(booking("FOO"), null, BookingStatus.GRANTED);
+
+        verify(divisionRollupRepository).deleteByDivision("FOO");
+        verify(divisionRollupRepository, never()).save(any(DivisionRollupEntry.class));
+    }
+
+    @Test
+    public void skipDivisionsWithoutRollup() {
+        given(divisionRollupRepository.countByDivision("FOO")).willReturn(0L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        divisionRollupService.bookingChanged(booking("FOO"), null, BookingStatus.GRANTED);
+        beforeCommit();
+        afterCommit();
+
+        verify(divisionRollupRepository).countByDivision("FOO");
+        verifyNoMoreInteractions(divisionRollupRepository);
+    }
+
+    @Test
+    public void removeRebuiltRollupIfChangedWhileStoring() {
+        given(securityService.getCurrentUser()).willReturn(new SecurityUser("John", null, "FOO", null, null, null));
+        given(divisionRollupRepository.findByDivision("FOO")).willReturn(Collections.emptyList());
+        given(divisionRollupRepository.save(anyListOf(DivisionRollupEntry.class))).will(invocation -> {
+            // A booking of the division is committed right before the rebuilt rollup
+            divisionRollupService.bookingChanged(booking("FOO"), null, BookingStatus.GRANTED);
+            return invocation.getArguments()[0];
+        });
+
+        divisionRollupService.getRollup("FOO", null);
+
+        verify(divisionRollupRepository, times(2)).deleteByDivision("FOO");
+    }
+
+    @Test
+    public void removeRollupIfChangeFails() {
+        given(divisionRollupRepository.countByDivision("FOO")).willReturn(1L);
+        given(divisionRollupRepository.findOneForUpdate(anyString(), anyInt(), anyString()))
+                .willThrow(new PessimisticLockingFailureException("Timeout"));
+        TransactionSynchronizationManager.initSynchronization();
+
+        divisionRollupService.bookingChanged(booking("FOO"), null, BookingStatus.GRANTED);
+        beforeCommit();
+        afterCommit();
+
+        verify(divisionRollupRepository).deleteByDivision("FOO");
+    }
+
+    @Test
+    public void storeRebuiltRollupOnlyWithoutPendingChanges() {
+        given(securityService.getCurrentUser()).willReturn(new SecurityUser("John", null, "FOO", null, null, null));
+        given(divisionRollupRepository.findByDivision("FOO")).willReturn(Collections.emptyList());
+        given(bookingRepository.countForDivisionRollup(eq("FOO"), any())).willReturn(Collections.singletonList(
+                new DivisionRollupRowDTO("FOO", "Java", seminar.getLastDate(), 5, BookingStatus.GRANTED, 1)));
+        TransactionSynchronizationManager.initSynchronization();
+        divisionRollupService.bookingChanged(booking("FOO"), null, BookingStatus.GRANTED);
+        beforeCommit();
+
+        assertThat(divisionRollupService.getRollup("FOO", null)).hasSize(1);
+        verify(divisionRollupRepository, never()).save(anyListOf(DivisionRollupEntry.class));
+
+        afterCommit();
+        assertThat(divisionRollupService.getRollup("FOO", null)).hasSize(1);
+        verify(divisionRollupRepository).save(anyListOf(DivisionRollupEntry.class));
+    }
+
+    @Test
+    public void ignoreUsersWithoutDivision() {
+        divisionRollupService.bookingChanged(booking(null), null, BookingStatus.GRANTED);
+        verifyZeroInteractions(divisionRollupRepository);
+    }
+
+    @Test
+    public void rebuildAllCountsCorrectedEntries() throws ParseException {
+        DivisionRollupEntry correct = entry("FOO");
+        correct.add(BookingStatus.GRANTED, 5, false, 1);
+        DivisionRollupEntry wrong = entry("BAR");
+        wrong.add(BookingStatus.GRANTED, 5, false, 2);
+        DivisionRollupEntry superfluous = entry("BAZ");
+        superfluous.add(BookingStatus.REQUESTED, 5, false, 1);
+        given(divisionRollupRepository.findAll()).willReturn(Arrays.asList(correct, wrong, superfluous));
+        given(bookingRepository.countForDivisionRollup(any())).willReturn(Arrays.asList(
+                new DivisionRollupRowDTO("FOO", "Java", sdf.parse("21/7/2019"), 5, BookingStatus.GRANTED, 1),
+                new DivisionRollupRowDTO("BAR", "Java", sdf.parse("21/7/2019"), 5, BookingStatus.GRANTED, 1),
+                new DivisionRollupRowDTO("FOO", "Scala", sdf.parse("21/7/2019"), 5, BookingStatus.GRANTED, 1),
+                new DivisionRollupRowDTO("QUX", "Java", sdf.parse("21/7/2019"), 5, BookingStatus.GRANTED, 1)));
+
+        DivisionRollupCheckDTO check = divisionRollupService.rebuildAll();
+
+        verify(divisionRollupRepository).deleteAllEntries();
+        assertThat(check.getEntries()).isEqualTo(4);
+        assertThat(check.getCorrected()).isEqualTo(3);
+    }
+
+    private static void beforeCommit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+        }
+    }
+
+    private static void afterCommit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCommit();
+        }
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+
+    private Booking booking(String division) {
+        User user = new User();
+        user.setUsername("John");
+        user.setDivision(division);
+        return Booking.builder().user(user).seminar(seminar).build();
+    }
+
+    private static DivisionRollupEntry entry(String division) {
+        return new DivisionRollupEntry(division, 2019, "Java");
+    }
+}
@@ -0,0 +1,149 @@
+package de.fh.rosenheim.aline.unit.service;
+
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarDTO;
+import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
+import de.fh.rosenheim.aline.repository.SeminarRepository;
+import de.fh.rosenheim.aline.service.SeminarCatalog;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.springframework.boot.actuate.metrics.Metric;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class SeminarCatalogTest {
+
+    private static final Date NOW = new Date(1480000000000L);
+
+    private SeminarRepository seminarRepository;
+    private SeminarCatalog seminarCatalog;
+
+    @Rule
+    public final ExpectedException exception = ExpectedException.none();
+
+    @Before
+    public void createCatalog() {
+        seminarRepository = mock(SeminarRepository.class);
+        seminarCatalog = new SeminarCatalog(seminarRepository, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    public void loadAllSeminarsOnce() throws NoObjectForIdException {
+        given(seminarRepository.findAll()).willReturn(Arrays.asList(seminar(2, "B", null), seminar(1, "A", null)));
+
+        assertThat(seminarCatalog.snapshot().getAllSeminars()).extracting("name").containsExactly("A", "B");
+        assertThat(seminarCatalog.getSeminar(2).getName()).isEqualTo("B");
+
+        verify(seminarRepository, times(1)).findAll();
+        Map<String, Number> metrics = metrics();
+        assertThat(metrics.get("seminar.catalog.cache.size")).isEqualTo(2);
+        assertThat(metrics.get("seminar.catalog.cache.hit")).isEqualTo(1L);
+        assertThat(metrics.get("seminar.catalog.cache.miss")).isEqualTo(1L);
+        assertThat(metrics.get("seminar.catalog.cache.refresh")).isEqualTo(1L);
+    }
+
+    @Test
+    public void reloadOnlyInvalidatedSeminars() throws NoObjectForIdException {
+        given(seminarRepository.findAll()).willReturn(Arrays.asList(seminar(1, "A", null), seminar(2, "B", null)));
+        seminarCatalog.snapshot().getAllSeminars();
+
+        given(seminarRepository.findAll(any(Iterable.class))).willReturn(Collections.singletonList(seminar(2, "C", null)));
+        seminarCatalog.invalidate(2);
+
+        assertThat(seminarCatalog.getSeminar(2).getName()).isEqualTo("C");
+        assertThat(seminarCatalog.snapshot().getAllSeminars()).extracting("name").containsExactly("A", "C");
+        verify(seminarRepository, times(1)).findAll();
+        verify(seminarRepository).findAll(Collections.singletonList(2L));
+    }
+
+    @Test
+    public void removeDeletedSeminars() throws NoObjectForIdException {
+        given(seminarRepository.findAll()).willReturn(Arrays.asList(seminar(1, "A", null), seminar(2, "B", null)));
+        seminarCatalog.snapshot().getAllSeminars();
+
+        given(seminarRepository.findAll(any(Iterable.class))).willReturn(Collections.emptyList());
+        seminarCatalog.invalidate(1);
+
+        assertThat(seminarCatalog.snapshot().getAllSeminars()).extracting("name").containsExactly("B");
+        exception.expect(NoObjectForIdException.class);
+        seminarCatalog.getSeminar(1);
+    }
+
+    @Test
+    public void invalidateBeforeFirstReadDoesNotQuery() {
+        seminarCatalog.invalidate(1);
+        verifyZeroInteractions(seminarRepository);
+    }
+
+    @Test
+    public void splitPastAndCurrentSeminars() {
+        given(seminarRepository.findAll()).willReturn(Arrays.asList(
+                seminar(1, "past", new Date(NOW.getTime() - 1)),
+                seminar(2, "ending now", NOW),
+                seminar(3, "future", new Date(NOW.getTime() + 1)),
+                seminar(4, "undated", null)));
+
+        assertThat(seminarCatalog.snapshot().getPastSeminars(NOW)).extracting("name").containsExactly("past", "ending now");
+        assertThat(seminarCatalog.snapshot().getCurrentSeminars(NOW)).extracting("name").containsExactly("future", "undated");
+    }
+
+    @Test
+    public void versionBelongsToTheSnapshot() {
+        given(seminarRepository.findAll()).willReturn(Arrays.asList(seminar(1, "A", NOW), seminar(2, "B", null)));
+        SeminarCatalog.Snapshot snapshot = seminarCatalog.snapshot();
+        String version = snapshot.getVersion(NOW);
+        assertThat(snapshot.getVersion(new Date(NOW.getTime() - 1))).isNotEqualTo(version);
+
+        given(seminarRepository.findAll(any(Iterable.class))).willReturn(Collections.singletonList(seminar(2, "C", null)));
+        seminarCatalog.invalidate(2);
+
+        // The old snapshot keeps its version and its seminars
+        assertThat(snapshot.getVersion(NOW)).isEqualTo(version);
+        assertThat(snapshot.getAllSeminars()).extracting("name").containsExactly("A", "B");
+        assertThat(seminarCatalog.snapshot().getVersion(NOW)).isNotEqualTo(version);
+        assertThat(seminarCatalog.snapshot().getAllSeminars()).extracting("name").containsExactly("A", "C");
+    }
+
+    @Test
+    public void searchUpdatedSeminars() {
+        given(seminarRepository.findAll()).willReturn(Arrays.asList(seminar(1, "Java", null), seminar(2, "Scrum", null),
+                seminar(3, "Java EE", null)));
+        assertThat(seminarCatalog.search("java", new PageRequest(0, 1)).getContent())
+                .extracting("name").containsExactly("Java");
+
+        given(seminarRepository.findAll(any(Iterable.class))).willReturn(Collections.singletonList(seminar(2, "Java", null)));
+        seminarCatalog.invalidate(Arrays.asList(1L, 2L));
+
+        Page<SeminarDTO> page = seminarCatalog.search("java", new PageRequest(1, 1));
+        assertThat(page.getContent()).extracting("id").containsExactly(3L);
+        assertThat(page.getTotalElements()).isEqualTo(2);
+    }
+
+    private Map<String, Number> metrics() {
+        return seminarCatalog.metrics().stream().collect(Collectors.toMap(Metric::getName, Metric::getValue,
+                (a, b) -> a, HashMap::new));
+    }
+
+    private static Seminar seminar(long id, String name, Date lastDate) {
+        Seminar seminar = new Seminar();
+        seminar.setId(id);
+        seminar.setName(name);
+        seminar.setDates(lastDate != null ? new Date[]{lastDate} : null);
+        return seminar;
+    }
+}
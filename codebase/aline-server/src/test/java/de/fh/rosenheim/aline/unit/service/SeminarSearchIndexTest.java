@@ -0,0 +1,67 @@
+package de.fh.rosenheim.aline.unit.service;
+
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarDTO;
+import de.fh.rosenheim.aline.service.SeminarSearchIndex;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+
+public class SeminarSearchIndexTest {
+
+    private SeminarSearchIndex index;
+
+    @Before
+    public void createIndex() {
+        index = new SeminarSearchIndex();
+        index.put(1, seminar("Scrum Master", "Software Engineering", "Learn agile methods like Scrum."));
+        index.put(2, seminar("Zeitmanagement", "Softskill", "Agile planning of your day"));
+        index.put(3, seminar("Java", "Software Engineering", null));
+    }
+
+    @Test
+    public void rankMatchesInTheNameFirst() {
+        assertThat(index.search("scrum")).containsExactly(1L);
+        assertThat(index.search("AGILE")).containsExactly(1L, 2L);
+        assertThat(index.search("software")).containsExactly(1L, 3L);
+    }
+
+    @Test
+    public void requireAllWords() {
+        assertThat(index.search("software agile")).containsExactly(1L);
+        assertThat(index.search("java agile")).isEmpty();
+    }
+
+    @Test
+    public void matchPrefixesLowerThanWords() {
+        index.put(4, seminar("Soft", null, null));
+        assertThat(index.search("soft")).containsExactly(4L, 1L, 2L, 3L);
+        assertThat(index.search("zeit")).containsExactly(2L);
+    }
+
+    @Test
+    public void ignoreEmptyQueries() {
+        assertThat(index.search(" ,. ")).isEmpty();
+        assertThat(index.search(null)).isEmpty();
+    }
+
+    @Test
+    public void replaceAndRemoveSeminars() {
+        index.put(3, seminar("Kotlin", "Software Engineering", null));
+        assertThat(index.search("java")).isEmpty();
+        assertThat(index.search("kotlin")).containsExactly(3L);
+
+        index.remove(1);
+        index.remove(42);
+        assertThat(index.search("software")).containsExactly(3L);
+        assertThat(index.search("scrum")).isEmpty();
+    }
+
+    private static SeminarDTO seminar(String name, String category, String description) {
+        SeminarDTO seminar = new SeminarDTO();
+        seminar.setName(name);
+        seminar.setCategory(category);
+        seminar.setDescription(description);
+        return seminar;
+    }
+}
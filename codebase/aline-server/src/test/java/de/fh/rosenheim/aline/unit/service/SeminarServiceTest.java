@@ -1,15 +1,25 @@
 package de.fh.rosenheim.aline.unit.service;
 
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
 import de.fh.rosenheim.aline.model.domain.Category;
 import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.dtos.bill.BillDTO;
 import de.fh.rosenheim.aline.model.dtos.bill.BillFactory;
+import de.fh.rosenheim.aline.model.dtos.bill.DivisionSumDTO;
 import de.fh.rosenheim.aline.model.dtos.seminar.SeminarBasicsDTO;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarCatalogVersion;
+import de.fh.rosenheim.aline.model.dtos.seminar.SeminarFilterDTO;
+import de.fh.rosenheim.aline.model.dtos.user.UserDTO;
 import de.fh.rosenheim.aline.model.exceptions.NoObjectForIdException;
 import de.fh.rosenheim.aline.model.exceptions.UnknownCategoryException;
 import de.fh.rosenheim.aline.model.security.SecurityUser;
+import de.fh.rosenheim.aline.repository.BookingRepository;
 import de.fh.rosenheim.aline.repository.CategoryRepository;
 import de.fh.rosenheim.aline.repository.SeminarRepository;
+import de.fh.rosenheim.aline.service.DivisionRollupService;
+import de.fh.rosenheim.aline.service.SeminarCatalog;
 import de.fh.rosenheim.aline.service.SeminarService;
+import de.fh.rosenheim.aline.service.SpendingLedgerService;
 import org.assertj.core.util.Lists;
 import org.junit.Before;
 import org.junit.Rule;
@@ -18,6 +28,11 @@ import org.junit.rules.ExpectedException;
 import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
@@ -28,19 +43,25 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
+import java.util.List;
 
 import static org.assertj.core.api.Java6Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.*;
 
 public class SeminarServiceTest {
 
     private SeminarRepository seminarRepository;
     private CategoryRepository categoryRepository;
+    private BookingRepository bookingRepository;
     private SeminarService seminarService;
     private BillFactory billFactory;
+    private SeminarCatalog seminarCatalog;
+    private SpendingLedgerService spendingLedgerService;
+    private DivisionRollupService divisionRollupService;
     private SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
 
     @Rule
@@ -50,8 +71,13 @@ public class SeminarServiceTest {
     public void createService() {
         seminarRepository = mock(SeminarRepository.class);
         categoryRepository = mock(CategoryRepository.class);
+        bookingRepository = mock(BookingRepository.class);
         billFactory = mock(BillFactory.class);
-        seminarService = new SeminarService(seminarRepository, categoryRepository, billFactory);
+        seminarCatalog = mock(SeminarCatalog.class);
+        spendingLedgerService = mock(SpendingLedgerService.class);
+        divisionRollupService = mock(DivisionRollupService.class);
+        seminarService = new SeminarService(seminarRepository, categoryRepository, bookingRepository, billFactory,
+                seminarCatalog, spendingLedgerService, divisionRollupService);
     }
 
     @Before
@@ -79,69 +105,19 @@ public class SeminarServiceTest {
     }
 
     @Test
-    public void getAllSeminars() throws NoObjectForIdException {
+    public void getSeminarsPage() {
         Seminar seminar = new Seminar();
         seminar.setName("foo");
-        seminar.setDescription("bar");
-        final Iterable<Seminar> list = new LinkedList<>(Collections.singletonList(seminar));
-        given(seminarRepository.findAll()).willReturn(list);
-        assertThat(seminarService.getAllSeminars()).isEqualTo(list);
-    }
-
-    @Test
-    public void getPastSeminars() throws NoObjectForIdException, ParseException {
-        Seminar onePastOneFutureDate = new Seminar();
-        onePastOneFutureDate.setId((long) 1);
-        onePastOneFutureDate.setDates(new Date[]{sdf.parse("10/08/2117"), sdf.parse("10/3/1899")});
-
-        Seminar allPastDates = new Seminar();
-        allPastDates.setId((long) 2);
-        allPastDates.setDates(new Date[]{sdf.parse("10/08/1117"), sdf.parse("10/3/1899")});
-
-        Seminar allFutureDates = new Seminar();
-        allFutureDates.setId((long) 3);
-        allFutureDates.setDates(new Date[]{sdf.parse("10/08/3117"), sdf.parse("10/3/3899")});
-
-        Seminar noDates = new Seminar();
-        noDates.setId((long) 4);
+        Pageable pageable = new PageRequest(0, 10);
+        Page<Seminar> page = new PageImpl<>(Collections.singletonList(seminar), pageable, 11);
+        given(seminarRepository.findAll(any(Specification.class), eq(pageable))).willReturn(page);
 
-        final Iterable<Seminar> list
-                = new LinkedList<>(Arrays.asList(onePastOneFutureDate, allPastDates, allFutureDates, noDates));
-        given(seminarRepository.findAll()).willReturn(list);
-        assertThat(seminarService.getPastSeminars())
-                .contains(allPastDates)
-                .doesNotContain(noDates)
-                .doesNotContain(onePastOneFutureDate)
-                .doesNotContain(allFutureDates)
-                .hasSize(1);
-    }
-
-    @Test
-    public void getCurrentSeminars() throws NoObjectForIdException, ParseException {
-        Seminar onePastOneFutureDate = new Seminar();
-        onePastOneFutureDate.setId((long) 1);
-        onePastOneFutureDate.setDates(new Date[]{sdf.parse("10/08/2117"), sdf.parse("10/3/1899")});
-
-        Seminar allPastDates = new Seminar();
-        allPastDates.setId((long) 2);
-        allPastDates.setDates(new Date[]{sdf.parse("10/08/1117"), sdf.parse("10/3/1899")});
+        SeminarFilterDTO filter = new SeminarFilterDTO();
+        filter.setCategory("Hello World");
+        filter.setTargetLevel(2);
 
-        Seminar allFutureDates = new Seminar();
-        allFutureDates.setId((long) 3);
-        allFutureDates.setDates(new Date[]{sdf.parse("10/08/3117"), sdf.parse("10/3/3899")});
-
-        Seminar noDates = new Seminar();
-        noDates.setId((long) 4);
-
-        final Iterable<Seminar> list
-                = new LinkedList<>(Arrays.asList(onePastOneFutureDate, allPastDates, allFutureDates, noDates));
-        given(seminarRepository.findAll()).willReturn(list);
-        assertThat(seminarService.getCurrentSeminars())
-                .contains(noDates)
-                .contains(onePastOneFutureDate)
-                .contains(allFutureDates)
-                .doesNotContain(allPastDates)
-                .hasSize(3);
+        assertThat(seminarService.getSeminars(filter, pageable)).isEqualTo(page);
+        verify(seminarRepository, times(0)).findAll();
     }
 
     @Test
@@ -162,6 +138,9 @@ public class SeminarServiceTest {
     public void deleteSeminar() throws NoObjectForIdException {
         seminarService.deleteSeminar(1);
         verify(seminarRepository).delete((long) 1);
+        verify(seminarCatalog).invalidate(1);
+        verify(spendingLedgerService).seminarChanged(1);
+        verify(divisionRollupService).seminarChanged(1);
     }
 
     @Test
@@ -179,6 +158,11 @@ public class SeminarServiceTest {
         newSeminar.setDescription("bar");
         newSeminar.setCategory("Hello World");
         given(categoryRepository.findAll()).willReturn(Lists.newArrayList(new Category("Hello World")));
+        given(seminarRepository.save(any(Seminar.class))).willAnswer(invocation -> {
+            Seminar seminar = invocation.getArgumentAt(0, Seminar.class);
+            seminar.setId((long) 7);
+            return seminar;
+        });
 
         seminarService.createNewSeminar(newSeminar);
 
@@ -186,6 +170,7 @@ public class SeminarServiceTest {
         verify(seminarRepository).save(argument.capture());
         assertEquals("foo", argument.getValue().getName());
         assertEquals("bar", argument.getValue().getDescription());
+        verify(seminarCatalog).invalidate(7);
     }
 
     @Test
@@ -238,5 +223,131 @@ public class SeminarServiceTest {
         verify(seminarRepository).save(argument.capture());
         assertEquals("foo", argument.getValue().getName());
         assertEquals("bar", argument.getValue().getDescription());
+        verify(seminarCatalog).invalidate(10);
+        verify(spendingLedgerService, never()).seminarChanged(anyLong());
+        // The category changed
+        verify(divisionRollupService).seminarChanged(10);
+    }
+
+    @Test
+    public void updateSeminarCostsRemovesSpendingLedgers() throws NoObjectForIdException, UnknownCategoryException {
+        SeminarBasicsDTO seminarUpdate = new SeminarBasicsDTO();
+        seminarUpdate.setCategory("Hello World");
+        seminarUpdate.setCostsPerParticipant(500);
+
+        Seminar actualSeminar = new Seminar();
+        actualSeminar.setId((long) 10);
+        actualSeminar.setCostsPerParticipant(400);
+
+        given(seminarRepository.findOne((long) 10)).willReturn(actualSeminar);
+        given(categoryRepository.findAll()).willReturn(Lists.newArrayList(new Category("Hello World")));
+
+        seminarService.updateSeminar(10, seminarUpdate);
+
+        verify(spendingLedgerService).seminarChanged(10);
+        verify(divisionRollupService).seminarChanged(10);
+    }
+
+    @Test
+    public void getBill() throws NoObjectForIdException {
+        Seminar seminar = new Seminar();
+        seminar.setId((long) 10);
+        List<UserDTO> participants = Collections.singletonList(new UserDTO("foo", "Foo", "Bar", "FOO"));
+        List<DivisionSumDTO> divisionSums = Collections.singletonList(new DivisionSumDTO("FOO", 42));
+        BillDTO bill = new BillDTO();
+
+        given(seminarRepository.findOne((long) 10)).willReturn(seminar);
+        given(bookingRepository.findUsersBySeminarIdAndStatus(10, BookingStatus.GRANTED)).willReturn(participants);
+        given(bookingRepository.sumCostsBySeminarIdAndStatusGroupByDivision(10, BookingStatus.GRANTED))
+                .willReturn(divisionSums);
+        given(billFactory.generateBill(seminar, participants, divisionSums)).willReturn(bill);
+
+        assertThat(seminarService.getBill(10)).isEqualTo(bill);
+        assertThat(seminar.isBillGenerated()).isTrue();
+        verify(seminarRepository).save(seminar);
+        verify(seminarCatalog).invalidate(10);
+    }
+
+    @Test
+    public void generateBillsInBatches() {
+        Seminar seminar1 = new Seminar();
+        seminar1.setId((long) 1);
+        Seminar seminar2 = new Seminar();
+        seminar2.setId((long) 2);
+        Seminar seminar3 = new Seminar();
+        seminar3.setId((long) 3);
+        BillDTO bill = new BillDTO();
+
+        Page<Seminar> firstPage = new PageImpl<>(Arrays.asList(seminar1, seminar2), new PageRequest(0, 2), 3);
+        Page<Seminar> secondPage = new PageImpl<>(Collections.singletonList(seminar3), new PageRequest(1, 2), 3);
+        given(seminarRepository.findAll(any(Specification.class), any(Pageable.class)))
+                .willReturn(firstPage, secondPage);
+        given(billFactory.generateBill(any(), any(), any())).willReturn(bill);
+
+        List<BillDTO> bills = new LinkedList<>();
+        assertThat(seminarService.generateBills(new SeminarFilterDTO(), bills::add)).isEqualTo(3);
+
+        assertThat(bills).hasSize(3);
+        verify(seminarRepository).markBillsGenerated(Arrays.asList((long) 1, (long) 2));
+        verify(seminarRepository).markBillsGenerated(Collections.singletonList((long) 3));
+        verify(seminarCatalog).invalidate(Arrays.asList((long) 1, (long) 2));
+        verify(seminarCatalog).invalidate(Collections.singletonList((long) 3));
+        verify(seminarRepository, never()).save(any(Seminar.class));
+    }
+
+    @Test
+    public void generateBillsWithoutMatchingSeminars() {
+        given(seminarRepository.findAll(any(Specification.class), any(Pageable.class)))
+                .willReturn(new PageImpl<>(Collections.emptyList()));
+
+        assertThat(seminarService.generateBills(new SeminarFilterDTO(), bill -> {
+        })).isEqualTo(0);
+
+        verify(seminarRepository, never()).markBillsGenerated(any());
+    }
+
+    @Test
+    public void getCatalogVersion() {
+        given(seminarRepository.findCatalogVersion(any(Date.class)))
+                .willReturn(new SeminarCatalogVersion(new Date(1480000000000L), 12L, 3L))
+                .willReturn(new SeminarCatalogVersion(new Date(1480000000000L), 11L, 3L))
+                .willReturn(new SeminarCatalogVersion(null, 0L, null));
+
+        assertThat(seminarService.getCatalogVersion()).isEqualTo("1480000000000-12-3");
+        // A deleted seminar doesn't change the latest update, but the count
+        assertThat(seminarService.getCatalogVersion()).isEqualTo("1480000000000-11-3");
+        assertThat(seminarService.getCatalogVersion()).isEqualTo("0-0-0");
+    }
+
+    @Test
+    public void categoriesAreLoadedOnce() throws UnknownCategoryException {
+        given(categoryRepository.findAll()).willReturn(Lists.newArrayList(new Category("B"), new Category("A")));
+        SeminarBasicsDTO newSeminar = new SeminarBasicsDTO();
+        newSeminar.setCategory("A");
+        given(seminarRepository.save(any(Seminar.class))).willAnswer(invocation -> {
+            Seminar seminar = invocation.getArgumentAt(0, Seminar.class);
+            seminar.setId((long) 1);
+            return seminar;
+        });
+
+        seminarService.createNewSeminar(newSeminar);
+        seminarService.createNewSeminar(newSeminar);
+
+        assertThat(seminarService.getAllCategories()).containsExactly("B", "A");
+        verify(categoryRepository, times(1)).findAll();
+    }
+
+    @Test
+    public void addAndDeleteCategoryUpdateCategories() {
+        given(categoryRepository.findAll()).willReturn(Lists.newArrayList(new Category("A")));
+
+        seminarService.addCategory(new Category("B"));
+        assertThat(seminarService.getAllCategories()).containsExactly("A", "B");
+        verify(categoryRepository).save(any(Category.class));
+
+        seminarService.deleteCategory("A");
+        assertThat(seminarService.getAllCategories()).containsExactly("B");
+        verify(categoryRepository).delete("A");
+        verify(categoryRepository, times(1)).findAll();
     }
 }
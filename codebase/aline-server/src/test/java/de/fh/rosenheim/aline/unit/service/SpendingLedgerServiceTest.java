@@ -0,0 +1,239 @@
+package de.fh.rosenheim.aline.unit.service;
+
+import de.fh.rosenheim.aline.model.domain.Booking;
+import de.fh.rosenheim.aline.model.domain.BookingStatus;
+import de.fh.rosenheim.aline.model.domain.Seminar;
+import de.fh.rosenheim.aline.model.domain.SpendingLedgerEntry;
+import de.fh.rosenheim.aline.model.domain.User;
+import de.fh.rosenheim.aline.model.dtos.booking.BookingFactory;
+import de.fh.rosenheim.aline.repository.BookingRepository;
+import de.fh.rosenheim.aline.repository.SpendingLedgerRepository;
+import de.fh.rosenheim.aline.service.SpendingLedgerService;
+import de.fh.rosenheim.aline.util.DateUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+import static org.assertj.core.api.Java6Assertions.assertThat;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
+public class SpendingLedgerServiceTest {
+
+    private SimpleDateFormat sdf = new SimpleDateFormat("dd/MM/yyyy");
+    private SpendingLedgerRepository spendingLedgerRepository;
+    private BookingRepository bookingRepository;
+    private SpendingLedgerService spendingLedgerService;
+    private Seminar seminar;
+
+    @Before
+    public void createService() throws ParseException {
+        spendingLedgerRepository = mock(SpendingLedgerRepository.class);
+        bookingRepository = mock(BookingRepository.class);
+        DateUtil dateUtil = mock(DateUtil.class);
+        given(dateUtil.getCurrentDate()).willReturn(sdf.parse("11/7/2019"));
+        spendingLedgerService = new SpendingLedgerService(spendingLedgerRepository, bookingRepository, new BookingFactory(dateUtil), dateUtil, mock(PlatformTransactionManager.class));
+
+        seminar = new Seminar();
+        seminar.setId((long) 1);
+        seminar.setDates((Date[]) Arrays.asList(sdf.parse("21/7/2019")).toArray());
+        seminar.setCostsPerParticipant(5);
+    }
+
+    @After
+    public void clearTransaction() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        TransactionSynchronizationManager.unbindResourceIfPossible(spendingLedgerService);
+    }
+
+    @Test
+    public void rebuildOnlyMissingAndExpiredLedgers() throws ParseException {
+        User valid = user("valid", true);
+        User missing = user("missing", true);
+        User expired = user("expired", true);
+        User withoutBookings = user("none", false);
+        given(spendingLedgerRepository.findByUsernameIn(any())).willReturn(Arrays.asList(
+                entry("valid", sdf.parse("12/7/2019")),
+                entry("expired", sdf.parse("10/7/2019"))));
+        given(bookingRepository.findWithSeminarByUserUsername(anyString())).willAnswer(invocation -> Collections.singletonList(
+                Booking.builder().status(BookingStatus.GRANTED).seminar(seminar).build()));
+
+        Map<String, List<SpendingLedgerEntry>> ledgers = spendingLedgerService.getLedgers(
+                Arrays.asList(valid, missing, expired, withoutBookings));
+
+        assertThat(ledgers.keySet()).containsOnly("valid", "missing", "expired");
+        assertThat(ledgers.get("valid").get(0).getGrantedSpending()).isEqualTo(0);
+        assertThat(ledgers.get("missing").get(0).getGrantedSpending()).isEqualTo(5);
+        assertThat(ledgers.get("expired").get(0).getGrantedSpending()).isEqualTo(5);
+        verify(spendingLedgerRepository).deleteByUsername("missing");
+        verify(spendingLedgerRepository).deleteByUsername("expired");
+        verify(bookingRepository, times(2)).findWithSeminarByUserUsername(anyString());
+        verify(bookingRepository, never()).findWithSeminarByUserUsername("valid");
+        verify(bookingRepository, never()).countByUserUsername("valid");
+    }
+
+    @Test
+    public void applyChangesAfterCommitOrderedByUsername() {
+        SpendingLedgerEntry john = entry("John", null);
+        john.add(BookingStatus.REQUESTED, 5, false, 1);
+        SpendingLedgerEntry jane = entry("Jane", null);
+        given(spendingLedgerRepository.countByUsername(anyString())).willReturn(1L);
+        given(spendingLedgerRepository.findByUsernameForUpdate("John")).willReturn(Collections.singletonList(john));
+        given(spendingLedgerRepository.findByUsernameForUpdate("Jane")).willReturn(Collections.singletonList(jane));
+        TransactionSynchronizationManager.initSynchronization();
+
+        spendingLedgerService.bookingChanged(booking("John"), BookingStatus.REQUESTED, BookingStatus.GRANTED);
+        spendingLedgerService.bookingChanged(booking("Jane"), null, BookingStatus.REQUESTED);
+        beforeCommit();
+        verifyZeroInteractions(spendingLedgerRepository);
+
+        afterCommit();
+
+        InOrder inOrder = inOrder(spendingLedgerRepository);
+        inOrder.verify(spendingLedgerRepository).findByUsernameForUpdate("Jane");
+        inOrder.verify(spendingLedgerRepository).findByUsernameForUpdate("John");
+        verify(spendingLedgerRepository, times(2)).save(anyListOf(SpendingLedgerEntry.class));
+        assertThat(john.getBookingCount()).isEqualTo(1);
+        assertThat(john.getPlannedTotalSpending()).isEqualTo(5);
+        assertThat(john.getGrantedSpending()).isEqualTo(5);
+        assertThat(john.getValidUntil()).isEqualTo(seminar.getLastDate());
+        assertThat(jane.getBookingCount()).isEqualTo(1);
+        assertThat(jane.getPlannedAdditionalSpending()).isEqualTo(5);
+    }
+
+    @Test
+    public void updateLedgerOnStatusChange() {
+        SpendingLedgerEntry entry = entry("John", null);
+        entry.add(BookingStatus.GRANTED, 5, false, 1);
+        given(spendingLedgerRepository.countByUsername("John")).willReturn(1L);
+        given(spendingLedgerRepository.findByUsernameForUpdate("John")).willReturn(Collections.singletonList(entry));
+
+        spendingLedgerService.bookingChanged(booking("John"), BookingStatus.GRANTED, null);
+
+        verify(spendingLedgerRepository).save(Collections.singletonList(entry));
+        assertThat(entry.getBookingCount()).isEqualTo(0);
+        assertThat(entry.getPlannedTotalSpending()).isEqualTo(0);
+        assertThat(entry.getGrantedSpending()).isEqualTo(0);
+    }
+
+    @Test
+    public void removeLedgerWithoutEntryForTheYear() throws ParseException {
+        SpendingLedgerEntry entry = entry("John", null);
+        entry.setYear(2018);
+        given(spendingLedgerRepository.countByUsername("John")).willReturn(1L);
+        given(spendingLedgerRepository.findByUsernameForUpdate("John")).willReturn(Collections.singletonList(entry));
+
+        spendingLedgerService.bookingChanged(booking("John"), null, BookingStatus.REQUESTED);
+
+        verify(spendingLedgerRepository).deleteByUsername("John");
+        verify(spendingLedgerRepository, never()).save(any(Iterable.class));
+        assertThat(entry.getBookingCount()).isEqualTo(0);
+    }
+
+    @Test
+    public void skipUsersWithoutLedger() {
+        given(spendingLedgerRepository.countByUsername("John")).willReturn(0L);
+        TransactionSynchronizationManager.initSynchronization();
+
+        spendingLedgerService.bookingChanged(booking("John"), null, BookingStatus.REQUESTED);
+        beforeCommit();
+        afterCommit();
+
+        verify(spendingLedgerRepository).countByUsername("John");
+        verifyNoMoreInteractions(spendingLedgerRepository);
+    }
+
+    @Test
+    public void removeLedgerIfChangeFails() {
+        given(spendingLedgerRepository.countByUsername("John")).willReturn(1L);
+        given(spendingLedgerRepository.findByUsernameForUpdate("John"))
+                .willThrow(new PessimisticLockingFailureException("Timeout"));
+        TransactionSynchronizationManager.initSynchronization();
+
+        spendingLedgerService.bookingChanged(booking("John"), null, BookingStatus.GRANTED);
+        beforeCommit();
+        afterCommit();
+
+        verify(spendingLedgerRepository).deleteByUsername("John");
+    }
+
+    @Test
+    public void storeRebuiltLedgerOnlyWithoutPendingChanges() {
+        given(spendingLedgerRepository.findByUsernameIn(any())).willReturn(Collections.emptyList());
+        given(bookingRepository.findWithSeminarByUserUsername("John")).willReturn(Collections.singletonList(
+                Booking.builder().status(BookingStatus.GRANTED).seminar(seminar).build()));
+        TransactionSynchronizationManager.initSynchronization();
+        spendingLedgerService.bookingChanged(booking("John"), null, BookingStatus.GRANTED);
+        beforeCommit();
+
+        assertThat(spendingLedgerService.getLedger(user("John", true))).hasSize(1);
+        verify(spendingLedgerRepository, never()).save(anyListOf(SpendingLedgerEntry.class));
+
+        afterCommit();
+        assertThat(spendingLedgerService.getLedger(user("John", true))).hasSize(1);
+        verify(spendingLedgerRepository).save(anyListOf(SpendingLedgerEntry.class));
+    }
+
+    @Test
+    public void removeRebuiltLedgerIfChangedWhileStoring() {
+        given(spendingLedgerRepository.findByUsernameIn(any())).willReturn(Collections.emptyList());
+        given(spendingLedgerRepository.save(anyListOf(SpendingLedgerEntry.class))).will(invocation -> {
+            // A booking of the user is committed right before the rebuilt ledger
+            spendingLedgerService.bookingChanged(booking("John"), null, BookingStatus.GRANTED);
+            return invocation.getArguments()[0];
+        });
+
+        spendingLedgerService.getLedger(user("John", true));
+
+        verify(spendingLedgerRepository, times(2)).deleteByUsername("John");
+    }
+
+    private Booking booking(String username) {
+        User user = new User();
+        user.setUsername(username);
+        return Booking.builder().user(user).seminar(seminar).build();
+    }
+
+    private User user(String username, boolean withBookings) {
+        User user = new User();
+        user.setUsername(username);
+        given(bookingRepository.countByUserUsername(username)).willReturn(withBookings ? 1L : 0L);
+        return user;
+    }
+
+    private static SpendingLedgerEntry entry(String username, Date validUntil) {
+        SpendingLedgerEntry entry = new SpendingLedgerEntry(username, 2019);
+        entry.setValidUntil(validUntil);
+        return entry;
+    }
+
+    private static void beforeCommit() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            synchronization.beforeCommit(false);
+        }
+    }
+
+    private static void afterCommit() {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCommit();
+        }
+        for (TransactionSynchronization synchronization : synchronizations) {
+            synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+        }
+    }
+}
@@ -44,6 +44,20 @@ public class UserServiceTest {
         assertThat(userService.getUserByName("Foo")).isEqualTo(user);
     }
 
+    @Test
+    public void getUserWithBookings() throws NoObjectForIdException {
+        User user = new User();
+        given(userRepository.findWithBookingsByUsername("Foo")).willReturn(user);
+        assertThat(userService.getUserWithBookingsByName("Foo")).isEqualTo(user);
+    }
+
+    @Test
+    public void getNonExistingUserWithBookings() throws NoObjectForIdException {
+        exception.expect(NoObjectForIdException.class);
+        given(userRepository.findWithBookingsByUsername("Foo")).willReturn(null);
+        userService.getUserWithBookingsByName("Foo");
+    }
+
     @Test
     public void getUserNames() {
         User user1 = new User();
@@ -72,7 +86,7 @@ public class UserServiceTest {
         user3.setUsername("Micky");
 
         final LinkedList<User> list = new LinkedList<>(Arrays.asList(user1, user2, user3));
-        given(userRepository.findByDivision("Foo")).willReturn(list);
+        given(userRepository.findWithBookingsByDivision("Foo")).willReturn(list);
         assertThat(userService.getUsersForDivision("Foo"))
                 .contains(user1)
                 .contains(user2)
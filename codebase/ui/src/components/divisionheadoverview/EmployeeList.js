@@ -111,7 +111,11 @@ export class EmployeeList extends React.Component {
                         this.calculateSeminareTotalAmount(result)
                     }
                 );
-                this.props.showSnackbar('Seminarbuchungen erfolgreich bestätigt.');
+                if (result.some(bookingResult => bookingResult.error)) {
+                    this.props.showSnackbar('Nicht alle Seminarbuchungen konnten bestätigt werden.');
+                } else {
+                    this.props.showSnackbar('Seminarbuchungen erfolgreich bestätigt.');
+                }
             },
             failureResult => {
                 this.props.router.replace('/error');
@@ -65,16 +65,21 @@ export class EmployeeListItem extends React.Component {
         return booking.status == 'GRANTED';
     }
 
+    checkIfBookingIsWaitlisted(booking) { //waitlisted bookings get a seat in the order of the waitlist, they can't be granted
+        return booking.status == 'WAITLISTED';
+    }
+
     renderSingleBooking(booking) {
+        let waitlisted = this.checkIfBookingIsWaitlisted(booking);
         return (
             <MenuItem
-                primaryText={(new Date(booking.created).toLocaleDateString()) + ' für ' + booking.seminarName}
+                primaryText={(new Date(booking.created).toLocaleDateString()) + ' für ' + booking.seminarName + (waitlisted ? ' (Warteliste)' : '')}
                 onClick={()=> {
                     this.confirmSingleBooking(booking.id)
                 }}
-                title="Nur dieses Seminar bestätigen"
+                title={waitlisted ? 'Auf der Warteliste, wird bei einem freien Platz nachgerückt' : 'Nur dieses Seminar bestätigen'}
                 key={booking.id}
-                disabled={this.checkIfBookingIsAlreadyGranted(booking)}/>
+                disabled={this.checkIfBookingIsAlreadyGranted(booking) || waitlisted}/>
         )
     }
 
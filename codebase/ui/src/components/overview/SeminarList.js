@@ -5,9 +5,16 @@ import {SearchBar} from '../general/SearchBar';
 import SeminarService from '../../services/SeminarService';
 import AuthService from '../../services/AuthService';
 
+/**
+ * Time in ms without further input before the text search is sent to the server
+ */
+const SEARCH_DELAY = 300;
+
 export class SeminarList extends React.Component {
     constructor() {
         super();
+        this.searchTimeout = null;
+        this.searchCounter = 0; //only the answer to the latest search is shown
         this.renderSeminar = this.renderSeminar.bind(this);
         this.renderPastSeminar = this.renderPastSeminar.bind(this);
         this.saveSeminars = this.saveSeminars.bind(this);
@@ -56,6 +63,11 @@ export class SeminarList extends React.Component {
         }
     }
 
+    componentWillUnmount() {
+        clearTimeout(this.searchTimeout);
+        this.searchCounter++;
+    }
+
     saveSeminars(result) {
         this.setState({
             seminars: result,
@@ -77,13 +89,39 @@ export class SeminarList extends React.Component {
     }
 
     searchForText(textToSearchFor) {
-        let shownSeminars = this.state.seminars.filter(seminar => JSON.stringify(seminar).toLowerCase().includes(textToSearchFor.toLowerCase()));
-        this.setState({
-            shownSeminars: shownSeminars
-        })
+        clearTimeout(this.searchTimeout);
+        let search = ++this.searchCounter;
+        if (!textToSearchFor || !textToSearchFor.trim()) {
+            this.clearFilter();
+            return;
+        }
+        this.searchTimeout = setTimeout(() => this.sendSearch(textToSearchFor, search), SEARCH_DELAY);
+    }
+
+    sendSearch(textToSearchFor, search) {
+        SeminarService.searchSeminars(textToSearchFor).then(
+            result => {
+                if (search !== this.searchCounter) {
+                    return; //a newer search was started in the meantime, its answer must not be overwritten
+                }
+                // The server ranks the matches, only the ones in the loaded lists are shown
+                let rank = new Map(result.map((seminar, index) => [seminar.id, index]));
+                let byRank = (a, b) => rank.get(a.id) - rank.get(b.id);
+                this.setState({
+                    shownSeminars: this.state.seminars.filter(seminar => rank.has(seminar.id)).sort(byRank),
+                    shownPastSeminars: this.state.pastSeminars.filter(seminar => rank.has(seminar.id)).sort(byRank)
+                })
+            })
+            .catch(failureResult => {
+                if (search === this.searchCounter) {
+                    this.props.router.replace('/error');
+                }
+            });
     }
 
     filterSeminars(category, targetLevel) {
+        clearTimeout(this.searchTimeout);
+        this.searchCounter++;
         let shownSeminars = [];
         let shownPastSeminars = [];
         //Category yes && targetLevel no
@@ -111,6 +149,8 @@ export class SeminarList extends React.Component {
     }
 
     clearFilter() {
+        clearTimeout(this.searchTimeout);
+        this.searchCounter++;
         this.setState({
             shownSeminars: this.state.seminars,
             shownPastSeminars: this.state.pastSeminars
@@ -24,7 +24,11 @@ export class BookingSummaryItem extends React.Component {
                 <div className="date">Gebucht am: { new Date(booking.created).toLocaleDateString()}</div>
                 <div className="date">Aktualisiert am: { new Date(booking.updated).toLocaleDateString()}</div>
                 <div className="status">
-                    <Checkbox label="Bestätigt" checked={(booking.status == 'GRANTED')} disabled={true}/>
+                    { booking.status == 'WAITLISTED' ?
+                        <Checkbox label="Auf der Warteliste" checked={false} disabled={true}
+                                  title="Das Seminar ist ausgebucht, die Buchung rückt bei einem freien Platz nach"/> :
+                        <Checkbox label="Bestätigt" checked={(booking.status == 'GRANTED')} disabled={true}/>
+                    }
                 </div>
             </Paper>
         )
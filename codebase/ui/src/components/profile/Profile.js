@@ -22,13 +22,15 @@ export class Profile extends React.Component {
 
     componentDidMount() {
         var currentUser;
+        //Only the current year's bookings are shown, the other years are only needed for the history button
+        let currentYear = new Date().getFullYear();
         //Show profile for: other user
         if (this.props.location.query.userName) {
-            currentUser = UserService.getUser(this.props.location.query.userName);
+            currentUser = UserService.getUser(this.props.location.query.userName, currentYear);
         }
         //Show profile for: owner
         else {
-            currentUser = UserService.getUser();
+            currentUser = UserService.getUser(undefined, currentYear);
             this.setState({
                 ownProfile: true
             })
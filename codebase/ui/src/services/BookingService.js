@@ -45,24 +45,28 @@ module.exports = {
             })
         }).then(Util.checkStatus).then(Util.parseJson)
     },
+    /**
+     * Grants all requested bookings of the employee with a single request.
+     * Waitlisted bookings are left out, they get a seat in the order of the waitlist.
+     *
+     * @param employee the employee (as a single element array) whose bookings should be granted
+     * @returns {Promise.<TResult>} the result for every booking
+     */
     grantAllBookings(employee){
         let token = StorageService.getUserToken();
-        let userName = StorageService.getCurrentUser().userName;
-        var result;
-        employee[0].bookings.map(booking => {
-            result = fetch(Util.getBasicBookingPath() + '/' + booking.id + '/grant', {
-                method: 'POST',
-                headers: {
-                    'Content-Type': 'application/json',
-                    'X-Auth-Token': token
-                },
-                body: JSON.stringify({
-                    seminarId: booking.id,
-                    userName: userName
-                })
-            }).then(Util.checkStatus).then(Util.parseJson)
-        })
-        return result;
+        return fetch(Util.getBasicBookingPath() + '/status', {
+            method: 'POST',
+            headers: {
+                'Content-Type': 'application/json',
+                'X-Auth-Token': token
+            },
+            body: JSON.stringify({
+                status: 'GRANTED',
+                bookingIds: employee[0].bookings
+                    .filter(booking => booking.status == 'REQUESTED')
+                    .map(booking => booking.id)
+            })
+        }).then(Util.checkStatus).then(Util.parseJson)
     }
 };
 
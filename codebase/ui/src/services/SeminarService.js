@@ -4,6 +4,8 @@
 import StorageService from "./StorageService";
 import Util from './Util';
 
+const SEARCH_PAGE_SIZE = 500;
+
 module.exports = {
 
     /**
@@ -52,6 +54,14 @@ module.exports = {
         }).then(Util.checkStatus).then(Util.parseJson)
     },
 
+    /**
+     * @param text the words to search for
+     * @returns {*|Promise.<TResult>} all seminars matching the text, best matches first, as a promise
+     */
+    searchSeminars(text) {
+        return searchSeminarsFromPage(text, 0, []);
+    },
+
     /**
      * @returns {*|Promise.<TResult>} all available categories as a promise
      */
@@ -155,3 +165,26 @@ module.exports = {
     }
 };
 
+
+/**
+ * Requests the matches page by page, until the last page is reached
+ * @param text the words to search for
+ * @param page the number of the page to request next
+ * @param matches the matches of the previous pages
+ * @returns {*|Promise.<TResult>} the matches of all pages, best matches first, as a promise
+ */
+function searchSeminarsFromPage(text, page, matches) {
+    let token = StorageService.getUserToken();
+    return fetch(Util.getBasicSeminarsPath() + '/search?page=' + page + '&size=' + SEARCH_PAGE_SIZE
+        + '&q=' + encodeURIComponent(text), {
+        method: 'GET',
+        headers: {
+            'Accept': 'application/json',
+            'Content-Type': 'application/json',
+            'X-Auth-Token': token
+        }
+    }).then(Util.checkStatus).then(Util.parseJson).then(result => {
+        let allMatches = matches.concat(result.content);
+        return result.last ? allMatches : searchSeminarsFromPage(text, page + 1, allMatches);
+    })
+}
@@ -21,12 +21,22 @@ module.exports = {
     },
 
     /**
+     * @param userName the user, the current user if not given
+     * @param year only the bookings of this year are contained, the spendings of all years anyway.
+     * All bookings if not given
      * @returns {Promise.<TResult>|*} the user data of the given user name as a promise
      */
-    getUser(userName) {
-        let path = Util.getBasicUsersPath();
+    getUser(userName, year) {
+        let params = [];
         if (userName) {
-            path += '?name=' + userName;
+            params.push('name=' + userName);
+        }
+        if (year) {
+            params.push('year=' + year);
+        }
+        let path = Util.getBasicUsersPath();
+        if (params.length > 0) {
+            path += '?' + params.join('&');
         }
         let token = StorageService.getUserToken();
         return fetch(path, {